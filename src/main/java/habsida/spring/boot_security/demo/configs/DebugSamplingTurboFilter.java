@@ -0,0 +1,67 @@
+package habsida.spring.boot_security.demo.configs;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets at most maxPerSecond DEBUG and TRACE events per second through from loggers under the
+ * configured prefixes, and drops the rest before an event is even created. INFO and above,
+ * and other loggers, are not affected. Configured in logback-spring.xml.
+ *
+ * Level checks such as {@code isDebugEnabled()} pass and are not counted, only actual log calls.
+ */
+public class DebugSamplingTurboFilter extends TurboFilter {
+
+    private final List<String> loggerPrefixes = new ArrayList<>();
+    private int maxPerSecond = 20;
+
+    private final AtomicLong currentSecond = new AtomicLong();
+    private final AtomicInteger passedThisSecond = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (format == null || level.isGreaterOrEqual(Level.INFO) || !sampled(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        long current = currentSecond.get();
+        if (second != current && currentSecond.compareAndSet(current, second)) {
+            passedThisSecond.set(0);
+        }
+        if (passedThisSecond.incrementAndGet() <= maxPerSecond) {
+            return FilterReply.NEUTRAL;
+        }
+        dropped.incrementAndGet();
+        return FilterReply.DENY;
+    }
+
+    public void addLoggerPrefix(String loggerPrefix) {
+        loggerPrefixes.add(loggerPrefix);
+    }
+
+    public void setMaxPerSecond(int maxPerSecond) {
+        this.maxPerSecond = maxPerSecond;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private boolean sampled(String loggerName) {
+        for (String prefix : loggerPrefixes) {
+            if (loggerName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.web.context.AbstractSecurityWebApplicationInitializer;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Support for the fast-startup profile (application-fast-startup.properties).
+ */
+@Configuration
+@Profile("fast-startup")
+public class FastStartupConfig {
+
+    /**
+     * Everything else is lazy, but the first request should not pay for Hibernate bootstrap
+     * (and the Flyway check in front of it) or for building the security filter chain.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter eagerFirstRequestPath() {
+        return (beanName, beanDefinition, beanType) -> "entityManagerFactory".equals(beanName)
+                || AbstractSecurityWebApplicationInitializer.DEFAULT_FILTER_NAME.equals(beanName)
+                || (beanType != null && EntityManagerFactory.class.isAssignableFrom(beanType));
+    }
+
+    /**
+     * Exits once the application is ready. Used by the appcds Maven profile to record the
+     * classes loaded during a complete startup into a CDS archive.
+     */
+    @Bean
+    @ConditionalOnProperty("app.startup.exit-after-ready")
+    public ApplicationListener<ApplicationReadyEvent> exitAfterReady() {
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
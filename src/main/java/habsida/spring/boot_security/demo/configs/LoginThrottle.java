@@ -0,0 +1,149 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.service.MaintenanceJob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-email and per-IP token buckets for login attempts.
+ *
+ * Each bucket is a single AtomicLong holding its "theoretical arrival time" (GCRA),
+ * so acquiring a token is one CAS and never takes a lock. A bucket whose arrival time
+ * lies in the past is full again and can be dropped without changing behaviour, which
+ * is what the login-throttle-sweep job does to keep memory bounded, off the login path.
+ * When a table is full of active buckets anyway, new keys are let through untracked:
+ * refusing them would lock out every user an attacker had not already crowded out.
+ */
+@Component
+public class LoginThrottle implements MaintenanceJob {
+
+    private final Limiter emailLimiter;
+    private final Limiter ipLimiter;
+
+    public LoginThrottle(@Value("${app.security.login-throttle.email.capacity:5}") int emailCapacity,
+                         @Value("${app.security.login-throttle.email.refill-seconds:60}") long emailRefillSeconds,
+                         @Value("${app.security.login-throttle.ip.capacity:20}") int ipCapacity,
+                         @Value("${app.security.login-throttle.ip.refill-seconds:5}") long ipRefillSeconds,
+                         @Value("${app.security.login-throttle.max-entries:100000}") int maxEntries) {
+        this.emailLimiter = new Limiter(emailCapacity, TimeUnit.SECONDS.toNanos(emailRefillSeconds), maxEntries);
+        this.ipLimiter = new Limiter(ipCapacity, TimeUnit.SECONDS.toNanos(ipRefillSeconds), maxEntries);
+    }
+
+    /**
+     * Take one token from both the IP and the email bucket.
+     *
+     * @return 0 if the attempt may proceed, otherwise the seconds until the empty bucket has a token again
+     */
+    public long tryAcquire(String email, String ip) {
+        long now = System.nanoTime();
+        long wait = ip != null ? ipLimiter.tryAcquire(ip, now) : 0;
+        if (wait == 0 && email != null && !email.isEmpty()) {
+            wait = emailLimiter.tryAcquire(normalize(email), now);
+        }
+        // Round up, a client retrying on time must find the token there
+        return wait == 0 ? 0 : TimeUnit.NANOSECONDS.toSeconds(wait + TimeUnit.SECONDS.toNanos(1) - 1);
+    }
+
+    /**
+     * Refill the email bucket after a successful login.
+     */
+    public void reset(String email) {
+        if (email != null) {
+            emailLimiter.reset(normalize(email));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "login-throttle-sweep";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Drop login throttle buckets that have refilled";
+    }
+
+    @Override
+    public Duration getDefaultInterval() {
+        return Duration.ofSeconds(30);
+    }
+
+    @Override
+    public String run() {
+        long now = System.nanoTime();
+        return "Dropped " + (emailLimiter.evictIdle(now) + ipLimiter.evictIdle(now)) + " idle buckets";
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static final class Limiter {
+
+        private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        private final long emissionInterval;
+        private final long burstTolerance;
+        private final int maxEntries;
+
+        Limiter(int capacity, long refillNanos, int maxEntries) {
+            this.emissionInterval = refillNanos;
+            this.burstTolerance = refillNanos * capacity;
+            this.maxEntries = maxEntries;
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the nanoseconds until one is available
+         */
+        long tryAcquire(String key, long now) {
+            AtomicLong bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxEntries) {
+                    evictIdle(now);
+                    if (buckets.size() >= maxEntries) {
+                        // Table is full of active buckets: fail open rather than grow or lock everyone out
+                        return 0;
+                    }
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            }
+            while (true) {
+                long tat = bucket.get();
+                long newTat = Math.max(tat, now) + emissionInterval;
+                if (newTat - now > burstTolerance) {
+                    return newTat - now - burstTolerance;
+                }
+                if (bucket.compareAndSet(tat, newTat)) {
+                    return 0;
+                }
+            }
+        }
+
+        void reset(String key) {
+            buckets.remove(key);
+        }
+
+        int size() {
+            return buckets.size();
+        }
+
+        int evictIdle(long now) {
+            int evicted = 0;
+            Iterator<Map.Entry<String, AtomicLong>> it = buckets.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue().get() - now <= 0) {
+                    it.remove();
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Rejects login form posts that exceed the {@link LoginThrottle} limits.
+ * Runs before UsernamePasswordAuthenticationFilter, so throttled attempts never
+ * reach the user lookup or the password encoder.
+ */
+public class LoginThrottleFilter extends OncePerRequestFilter {
+
+    private final LoginThrottle loginThrottle;
+
+    public LoginThrottleFilter(LoginThrottle loginThrottle) {
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("POST".equals(request.getMethod()) && "/login".equals(request.getServletPath()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long retryAfter = loginThrottle.tryAcquire(request.getParameter("username"), request.getRemoteAddr());
+        if (retryAfter > 0) {
+            request.getSession().setAttribute("loginError",
+                    "Too many login attempts. Please try again in " + retryAfter + " seconds.");
+            response.setHeader("Retry-After", Long.toString(retryAfter));
+            response.sendRedirect("/login?error");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,33 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.service.PermissionService;
+import org.springframework.security.access.PermissionEvaluator;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+
+/**
+ * Backs {@code hasPermission(target, 'code')} in method security expressions with the
+ * permission matrix. Permissions are global, so the target is not consulted.
+ */
+@Component
+public class PermissionMatrixEvaluator implements PermissionEvaluator {
+
+    private final PermissionService permissionService;
+
+    public PermissionMatrixEvaluator(PermissionService permissionService) {
+        this.permissionService = permissionService;
+    }
+
+    @Override
+    public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
+        return permissionService.hasPermission(authentication, Permission.fromCode(String.valueOf(permission)));
+    }
+
+    @Override
+    public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
+        return permissionService.hasPermission(authentication, Permission.fromCode(String.valueOf(permission)));
+    }
+}
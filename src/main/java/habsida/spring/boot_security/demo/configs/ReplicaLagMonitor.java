@@ -0,0 +1,128 @@
+package habsida.spring.boot_security.demo.configs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether read-only traffic may use the replica.
+ *
+ * Every check reads the heartbeat the replica has applied, then writes a fresh one to the
+ * primary. The lag is the age of the replica's heartbeat, so it includes up to one check
+ * interval; max-lag should be set above the interval. A max-lag of zero only checks that
+ * the replica answers. Until the first successful check, reads stay on the primary.
+ */
+@Slf4j
+public class ReplicaLagMonitor implements SmartLifecycle {
+
+    private static final String READ_SQL = "SELECT beat_at FROM replication_heartbeat WHERE id = 1";
+    private static final String WRITE_SQL = "UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1";
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+    private final long intervalMillis;
+
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong failedChecks = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    private volatile boolean replicaUsable;
+    private volatile long lagMillis = -1;
+    private volatile ScheduledExecutorService scheduler;
+
+    public ReplicaLagMonitor(DataSource primary, DataSource replica, Duration maxLag, Duration interval) {
+        this.primary = new JdbcTemplate(primary);
+        this.replica = new JdbcTemplate(replica);
+        this.maxLagMillis = maxLag.toMillis();
+        this.intervalMillis = interval.toMillis();
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    void recordFallback() {
+        fallbacks.incrementAndGet();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("replicaUsable", replicaUsable);
+        stats.put("lagMillis", lagMillis);
+        stats.put("maxLagMillis", maxLagMillis);
+        stats.put("checks", checks.get());
+        stats.put("failedChecks", failedChecks.get());
+        stats.put("fallbacks", fallbacks.get());
+        return stats;
+    }
+
+    /**
+     * Run one heartbeat round and update the replica's status.
+     */
+    public void check() {
+        checks.incrementAndGet();
+        long now = System.currentTimeMillis();
+        boolean usable;
+        try {
+            Long replicaBeat = replica.queryForObject(READ_SQL, Long.class);
+            lagMillis = replicaBeat == null ? Long.MAX_VALUE : Math.max(0, now - replicaBeat);
+            usable = maxLagMillis <= 0 || lagMillis <= maxLagMillis;
+        } catch (Exception e) {
+            failedChecks.incrementAndGet();
+            lagMillis = -1;
+            usable = false;
+            log.warn("Replica check failed, reads fall back to the primary: {}", e.getMessage());
+        }
+        if (usable != replicaUsable) {
+            log.info("Replica {} (lag {} ms, tolerance {} ms)", usable ? "in use" : "bypassed", lagMillis, maxLagMillis);
+        }
+        replicaUsable = usable;
+
+        try {
+            primary.update(WRITE_SQL, now);
+        } catch (Exception e) {
+            log.warn("Could not write replication heartbeat: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        check();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::check, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    @Override
+    public void stop() {
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+            scheduler = null;
+        }
+        replicaUsable = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+}
@@ -0,0 +1,180 @@
+package habsida.spring.boot_security.demo.configs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-request timings collected by {@link RequestTimingFilter}. The request thread is the only
+ * writer, so nothing here is synchronized. The static hooks do nothing outside a timed request
+ * (startup, jobs, async threads), where they cost one thread-local read.
+ *
+ * Marks split the request into consecutive stages: filters before the handler (mostly the
+ * security chain), the handler, and writing the response body. Phases are time spent inside
+ * those stages and overlap them; the SQL of {@code loadUserByUsername}, for example, counts
+ * towards both authentication and sql.
+ */
+public final class RequestProfile {
+
+    public enum Phase {
+        AUTHENTICATION("authentication"),
+        SQL("sql"),
+        MAPPING("mapping");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // Distinct statements kept per request; long statements are cut, the rest only counted
+    static final int MAX_STATEMENTS = 32;
+    static final int MAX_STATEMENT_LENGTH = 1000;
+    static final String OTHER_STATEMENTS = "(other statements)";
+
+    private static final ThreadLocal<RequestProfile> CURRENT = new ThreadLocal<>();
+
+    private final long startedNanos;
+    private long handlerNanos;
+    private long writeNanos;
+    private long handlerEndNanos;
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private final long[] openedAt = new long[Phase.values().length];
+    private final int[] depth = new int[Phase.values().length];
+
+    private final Map<String, Integer> statements = new LinkedHashMap<>();
+    private int statementCount;
+
+    private RequestProfile(long startedNanos) {
+        this.startedNanos = startedNanos;
+    }
+
+    static RequestProfile start() {
+        RequestProfile profile = new RequestProfile(System.nanoTime());
+        CURRENT.set(profile);
+        return profile;
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Start of a phase; nested entries into the same phase are only timed once.
+     */
+    public static void enter(Phase phase) {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null && profile.depth[phase.ordinal()]++ == 0) {
+            profile.openedAt[phase.ordinal()] = System.nanoTime();
+        }
+    }
+
+    public static void exit(Phase phase) {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null && profile.depth[phase.ordinal()] > 0 && --profile.depth[phase.ordinal()] == 0) {
+            profile.phaseNanos[phase.ordinal()] += System.nanoTime() - profile.openedAt[phase.ordinal()];
+        }
+    }
+
+    /**
+     * Start of a phase for hooks that may not see their end, such as MapStruct's after-mapping
+     * methods, which are skipped on null input and exceptions. Does not nest: a start without
+     * an end is replaced by the next one.
+     */
+    public static void begin(Phase phase) {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.openedAt[phase.ordinal()] = System.nanoTime();
+        }
+    }
+
+    public static void end(Phase phase) {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null && profile.openedAt[phase.ordinal()] != 0) {
+            profile.phaseNanos[phase.ordinal()] += System.nanoTime() - profile.openedAt[phase.ordinal()];
+            profile.openedAt[phase.ordinal()] = 0;
+        }
+    }
+
+    /**
+     * Counts an SQL statement sent by this request, as prepared (parameters are never seen).
+     */
+    public static void statement(String sql) {
+        RequestProfile profile = CURRENT.get();
+        if (profile == null) {
+            return;
+        }
+        profile.statementCount++;
+        String key = sql.length() > MAX_STATEMENT_LENGTH ? sql.substring(0, MAX_STATEMENT_LENGTH) + "..." : sql;
+        if (!profile.statements.containsKey(key) && profile.statements.size() >= MAX_STATEMENTS) {
+            key = OTHER_STATEMENTS;
+        }
+        profile.statements.merge(key, 1, Integer::sum);
+    }
+
+    static void handlerStarted() {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null && profile.handlerNanos == 0) {
+            profile.handlerNanos = System.nanoTime();
+        }
+    }
+
+    public static void bodyWriteStarted() {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null && profile.writeNanos == 0) {
+            profile.writeNanos = System.nanoTime();
+        }
+    }
+
+    static void handlerFinished() {
+        RequestProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.handlerEndNanos = System.nanoTime();
+        }
+    }
+
+    long elapsedNanos(long now) {
+        return now - startedNanos;
+    }
+
+    /**
+     * Stage and phase durations in microseconds, in request order. Stages that did not happen,
+     * such as the handler of a request the security chain answered, are left out.
+     */
+    Map<String, Long> phaseMicros(long finishedNanos) {
+        Map<String, Long> micros = new LinkedHashMap<>();
+        long handlerStart = handlerNanos != 0 ? handlerNanos : finishedNanos;
+        micros.put("filters", toMicros(handlerStart - startedNanos));
+        if (handlerNanos != 0) {
+            long handlerEnd = handlerEndNanos != 0 ? handlerEndNanos : finishedNanos;
+            long handlerBodyEnd = writeNanos != 0 ? writeNanos : handlerEnd;
+            micros.put("handler", toMicros(handlerBodyEnd - handlerNanos));
+            if (writeNanos != 0) {
+                micros.put("serialization", toMicros(handlerEnd - writeNanos));
+            }
+        }
+        for (Phase phase : Phase.values()) {
+            if (phaseNanos[phase.ordinal()] > 0) {
+                micros.put(phase.getKey(), toMicros(phaseNanos[phase.ordinal()]));
+            }
+        }
+        return micros;
+    }
+
+    Map<String, Integer> statements() {
+        return statements;
+    }
+
+    int statementCount() {
+        return statementCount;
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,46 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Hooks that feed the {@link RequestProfile} of {@link RequestTimingFilter}: handler start and
+ * end from an interceptor, SQL from Hibernate through {@link SqlStatementRecorder}. The start of
+ * the response body write is marked by the controller advice ResponseTimingAdvice.
+ */
+@Configuration
+public class RequestTimingConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                RequestProfile.handlerStarted();
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                RequestProfile.handlerFinished();
+            }
+        });
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatementRecorder() {
+        return properties -> {
+            properties.put(AvailableSettings.STATEMENT_INSPECTOR, SqlStatementRecorder.class.getName());
+            properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER, SqlStatementRecorder.class.getName());
+        };
+    }
+}
@@ -0,0 +1,61 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.service.SlowRequestLog;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Times every request with a {@link RequestProfile} and hands the slow ones to
+ * {@link SlowRequestLog}. Runs right after {@link CorrelationIdFilter}, so the security
+ * chain is inside the measurement and entries carry the request id. Fast requests only
+ * cost the profile allocation and two clock reads.
+ *
+ * Streaming and other async responses are timed up to the handler returning.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    private final SlowRequestLog slowRequestLog;
+
+    public RequestTimingFilter(SlowRequestLog slowRequestLog) {
+        this.slowRequestLog = slowRequestLog;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestProfile profile = RequestProfile.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestProfile.clear();
+            long finished = System.nanoTime();
+            long elapsed = profile.elapsedNanos(finished);
+            long durationMillis = elapsed / 1_000_000;
+            if (slowRequestLog.isCandidate(durationMillis)) {
+                slowRequestLog.offer(new SlowRequestLog.SlowRequest(
+                        MDC.get(CorrelationIdFilter.MDC_KEY),
+                        request.getMethod(),
+                        request.getRequestURI(),
+                        response.getStatus(),
+                        LocalDateTime.now().minus(elapsed / 1000, ChronoUnit.MICROS),
+                        durationMillis,
+                        profile.phaseMicros(finished),
+                        profile.statementCount(),
+                        profile.statements()));
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package habsida.spring.boot_security.demo.configs;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Reports Hibernate's SQL to the current {@link RequestProfile}: the statement text as it is
+ * prepared, and the time spent executing it. Hibernate creates one instance per session factory
+ * as the statement inspector and one per session as the event listener; neither holds state.
+ * Queries run through JdbcTemplate bypass Hibernate and are not seen.
+ */
+public class SqlStatementRecorder extends BaseSessionEventListener implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestProfile.statement(sql);
+        return sql;
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        RequestProfile.enter(RequestProfile.Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestProfile.exit(RequestProfile.Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        RequestProfile.enter(RequestProfile.Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestProfile.exit(RequestProfile.Phase.SQL);
+    }
+}
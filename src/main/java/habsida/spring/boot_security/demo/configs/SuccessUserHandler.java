@@ -1,5 +1,7 @@
 package habsida.spring.boot_security.demo.configs;
 
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.LoginActivityTracker;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.AuthorityUtils;
@@ -12,12 +14,28 @@ import java.util.Collection;
 import java.util.Set;
 
 public class SuccessUserHandler implements AuthenticationSuccessHandler {
+
+    private final LoginThrottle loginThrottle;
+    private final LoginActivityTracker loginActivityTracker;
+
+    public SuccessUserHandler(LoginThrottle loginThrottle, LoginActivityTracker loginActivityTracker) {
+        this.loginThrottle = loginThrottle;
+        this.loginActivityTracker = loginActivityTracker;
+    }
+
     @Override
     public void onAuthenticationSuccess(HttpServletRequest request,
                                         HttpServletResponse response,
                                         Authentication authentication)
             throws IOException, ServletException {
 
+        // A successful login gives the account its full attempt budget back
+        loginThrottle.reset(authentication.getName());
+        // Buffered and written behind, so a login costs no extra database write
+        if (authentication.getPrincipal() instanceof User) {
+            loginActivityTracker.recordLogin(((User) authentication.getPrincipal()).getId());
+        }
+
         Set<String> roles = AuthorityUtils.authorityListToSet(authentication.getAuthorities());
 
         if (roles.contains("ROLE_ADMIN")){
@@ -0,0 +1,47 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.User;
+import org.hibernate.Session;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.JpaVendorAdapter;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Scopes every entity manager opened inside a tenant (for a transaction or for the request)
+ * with the Hibernate tenant filter, so all repository queries on users and roles are limited
+ * to the current tenant. Loads by primary key are not filtered; see the findVisibleById queries.
+ */
+@Configuration
+public class TenantConfig {
+
+    /**
+     * Same settings as Boot's default adapter, plus the filter.
+     */
+    @Bean
+    public JpaVendorAdapter jpaVendorAdapter(JpaProperties properties) {
+        HibernateJpaVendorAdapter adapter = new HibernateJpaVendorAdapter() {
+            @Override
+            public void postProcessEntityManager(EntityManager entityManager) {
+                String tenant = TenantContext.get();
+                if (tenant != null) {
+                    entityManager.unwrap(Session.class)
+                            .enableFilter(User.TENANT_FILTER)
+                            .setParameter(User.TENANT_PARAMETER, tenant);
+                }
+            }
+        };
+        adapter.setShowSql(properties.isShowSql());
+        if (properties.getDatabase() != null) {
+            adapter.setDatabase(properties.getDatabase());
+        }
+        if (properties.getDatabasePlatform() != null) {
+            adapter.setDatabasePlatform(properties.getDatabasePlatform());
+        }
+        adapter.setGenerateDdl(properties.isGenerateDdl());
+        return adapter;
+    }
+}
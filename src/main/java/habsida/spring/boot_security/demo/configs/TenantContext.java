@@ -0,0 +1,52 @@
+package habsida.spring.boot_security.demo.configs;
+
+/**
+ * The tenant the current thread works for. Set per request by {@link TenantFilter}; entity
+ * managers opened while it is set only see that tenant's users and roles.
+ */
+public final class TenantContext {
+
+    public static final String DEFAULT_TENANT = "default";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * @return the current tenant, or null outside a tenant scope (startup, background threads, login)
+     */
+    public static String get() {
+        return CURRENT.get();
+    }
+
+    public static String getOrDefault() {
+        String tenant = CURRENT.get();
+        return tenant != null ? tenant : DEFAULT_TENANT;
+    }
+
+    public static void set(String tenant) {
+        CURRENT.set(tenant);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Run an action as the given tenant, restoring the previous one afterwards.
+     */
+    public static void runAs(String tenant, Runnable action) {
+        String previous = CURRENT.get();
+        CURRENT.set(tenant);
+        try {
+            action.run();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
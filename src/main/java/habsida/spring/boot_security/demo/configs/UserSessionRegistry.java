@@ -0,0 +1,357 @@
+package habsida.spring.boot_security.demo.configs;
+
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.MaintenanceJob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationListener;
+import org.springframework.security.core.session.AbstractSessionEvent;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.core.session.SessionIdChangedEvent;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logged-in sessions, indexed by session id and by user.
+ *
+ * Users are keyed by id, so sessions survive an email change and can be expired by id. An expired
+ * session is logged out by ConcurrentSessionFilter on its next request, which removes it; until then
+ * it has to stay registered, or the filter would let it through. At most max-sessions are held in
+ * total: a tenth of them are reserved for sessions pushed out to make room, the rest are live. A new
+ * session first pushes out sessions idle for longer than the servlet session timeout, otherwise the
+ * least recently used of a small sample. A pushed-out live session leaves behind only its id and
+ * username, so it is still logged out on its next request; when the reserve is full the oldest
+ * leftover is forgotten. The session-registry-sweep job forgets idle sessions and leftovers, as
+ * their destroy event may never come (e.g. after a container restart).
+ */
+@Component
+public class UserSessionRegistry implements SessionRegistry, ApplicationListener<AbstractSessionEvent>, MaintenanceJob {
+
+    // Sessions looked at per eviction; approximates LRU without scanning the whole registry
+    private static final int EVICTION_SAMPLE = 16;
+
+    private final int maxSessions;
+    private final int maxLiveSessions;
+    private final int maxEvictedSessions;
+    private final long idleTimeoutMillis;
+
+    private final ConcurrentHashMap<String, SessionInformation> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    // Evicted sessions awaiting logout, principal reduced to the username, oldest first; guarded by itself
+    private final Map<String, SessionInformation> evictedSessions;
+
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong forgotten = new AtomicLong();
+    private final AtomicLong expiredByAdmin = new AtomicLong();
+
+    public UserSessionRegistry(@Value("${app.sessions.max-sessions:100000}") int maxSessions,
+                               @Value("${server.servlet.session.timeout:30m}") Duration idleTimeout) {
+        this.maxSessions = maxSessions;
+        this.maxEvictedSessions = maxSessions > 1 ? Math.max(1, maxSessions / 10) : 0;
+        this.maxLiveSessions = maxSessions - maxEvictedSessions;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.evictedSessions = new LinkedHashMap<String, SessionInformation>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SessionInformation> eldest) {
+                if (size() <= maxEvictedSessions) {
+                    return false;
+                }
+                forgotten.incrementAndGet();
+                return true;
+            }
+        };
+    }
+
+    @Override
+    public List<Object> getAllPrincipals() {
+        List<Object> principals = new ArrayList<>();
+        for (Set<String> ids : sessionsByUser.values()) {
+            for (String id : ids) {
+                SessionInformation session = sessions.get(id);
+                if (session != null) {
+                    principals.add(session.getPrincipal());
+                    break;
+                }
+            }
+        }
+        return principals;
+    }
+
+    @Override
+    public List<SessionInformation> getAllSessions(Object principal, boolean includeExpiredSessions) {
+        Set<String> ids = sessionsByUser.get(keyOf(principal));
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        List<SessionInformation> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            SessionInformation session = sessions.get(id);
+            if (session != null && (includeExpiredSessions || !session.isExpired())) {
+                result.add(session);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public SessionInformation getSessionInformation(String sessionId) {
+        SessionInformation session = sessions.get(sessionId);
+        if (session != null) {
+            return session;
+        }
+        synchronized (evictedSessions) {
+            return evictedSessions.get(sessionId);
+        }
+    }
+
+    @Override
+    public void refreshLastRequest(String sessionId) {
+        SessionInformation session = sessions.get(sessionId);
+        if (session != null) {
+            session.refreshLastRequest();
+        }
+    }
+
+    @Override
+    public void registerNewSession(String sessionId, Object principal) {
+        removeSessionInformation(sessionId);
+        while (sessions.size() >= maxLiveSessions && evictLeastRecentlyUsed()) {
+            // until there is room for the new session
+        }
+        sessions.put(sessionId, new SessionInformation(principal, sessionId, new Date()));
+        sessionsByUser.compute(keyOf(principal), (key, ids) -> {
+            Set<String> updated = ids != null ? ids : ConcurrentHashMap.<String>newKeySet();
+            updated.add(sessionId);
+            return updated;
+        });
+    }
+
+    @Override
+    public void removeSessionInformation(String sessionId) {
+        synchronized (evictedSessions) {
+            evictedSessions.remove(sessionId);
+        }
+        SessionInformation session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        sessionsByUser.computeIfPresent(keyOf(session.getPrincipal()), (key, ids) -> {
+            ids.remove(sessionId);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    @Override
+    public void onApplicationEvent(AbstractSessionEvent event) {
+        if (event instanceof SessionDestroyedEvent) {
+            removeSessionInformation(((SessionDestroyedEvent) event).getId());
+        } else if (event instanceof SessionIdChangedEvent) {
+            SessionIdChangedEvent changed = (SessionIdChangedEvent) event;
+            SessionInformation session = sessions.get(changed.getOldSessionId());
+            if (session != null) {
+                removeSessionInformation(changed.getOldSessionId());
+                registerNewSession(changed.getNewSessionId(), session.getPrincipal());
+            }
+        }
+    }
+
+    /**
+     * Log the user out everywhere: each of their sessions ends on its next request.
+     *
+     * @return the number of sessions expired
+     */
+    public int expireUserSessions(Long userId) {
+        Set<String> ids = sessionsByUser.get(userId);
+        int expired = 0;
+        if (ids != null) {
+            for (String id : ids) {
+                SessionInformation session = sessions.get(id);
+                if (session != null && !session.isExpired()) {
+                    session.expireNow();
+                    expired++;
+                }
+            }
+        }
+        expiredByAdmin.addAndGet(expired);
+        return expired;
+    }
+
+    /**
+     * Expire once the current transaction commits, so a rollback leaves the sessions alone;
+     * immediately when no transaction is active.
+     */
+    public void expireUserSessionsAfterCommit(final Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            expireUserSessions(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                expireUserSessions(userId);
+            }
+        });
+    }
+
+    /**
+     * Live sessions of the given tenant's users, most recently used first within each user.
+     */
+    public List<Map<String, Object>> activeUsers(String tenant) {
+        List<Map<String, Object>> users = new ArrayList<>();
+        for (Map.Entry<Object, Set<String>> entry : sessionsByUser.entrySet()) {
+            Object principal = null;
+            List<Map<String, Object>> userSessions = new ArrayList<>();
+            for (String id : entry.getValue()) {
+                SessionInformation session = sessions.get(id);
+                if (session == null || session.isExpired()) {
+                    continue;
+                }
+                principal = session.getPrincipal();
+                Map<String, Object> view = new HashMap<>();
+                view.put("lastRequest", session.getLastRequest());
+                userSessions.add(view);
+            }
+            if (principal == null || !tenant.equals(tenantOf(principal))) {
+                continue;
+            }
+            userSessions.sort((a, b) -> ((Date) b.get("lastRequest")).compareTo((Date) a.get("lastRequest")));
+            Map<String, Object> user = new HashMap<>();
+            user.put("userId", principal instanceof User ? ((User) principal).getId() : null);
+            user.put("username", principal instanceof UserDetails ? ((UserDetails) principal).getUsername() : principal.toString());
+            user.put("sessions", userSessions);
+            users.add(user);
+        }
+        return users;
+    }
+
+    public Map<String, Object> stats(String tenant) {
+        int activeSessions = 0;
+        List<Map<String, Object>> users = activeUsers(tenant);
+        for (Map<String, Object> user : users) {
+            activeSessions += ((List<?>) user.get("sessions")).size();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeUsers", users.size());
+        stats.put("activeSessions", activeSessions);
+        stats.put("registeredSessions", sessions.size());
+        stats.put("maxSessions", maxSessions);
+        stats.put("evicted", evicted.get());
+        synchronized (evictedSessions) {
+            stats.put("evictedPendingLogout", evictedSessions.size());
+        }
+        stats.put("evictedForgotten", forgotten.get());
+        stats.put("expiredByAdmin", expiredByAdmin.get());
+        return stats;
+    }
+
+    @Override
+    public String getName() {
+        return "session-registry-sweep";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Forget sessions idle for longer than the session timeout";
+    }
+
+    @Override
+    public Duration getDefaultInterval() {
+        return Duration.ofMinutes(5);
+    }
+
+    @Override
+    public String run() {
+        return "Removed " + removeIdle() + " idle sessions";
+    }
+
+    /**
+     * Make room for one session, looking at no more than {@link #EVICTION_SAMPLE} of them.
+     *
+     * @return false if the registry was emptied concurrently and nothing was evicted
+     */
+    private boolean evictLeastRecentlyUsed() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        SessionInformation eldest = null;
+        int sampled = 0;
+        for (SessionInformation session : sessions.values()) {
+            if (session.getLastRequest().getTime() < cutoff) {
+                // The container has timed it out already
+                removeSessionInformation(session.getSessionId());
+                return true;
+            }
+            if (eldest == null || session.getLastRequest().before(eldest.getLastRequest())) {
+                eldest = session;
+            }
+            if (++sampled == EVICTION_SAMPLE) {
+                break;
+            }
+        }
+        if (eldest == null) {
+            return false;
+        }
+        removeSessionInformation(eldest.getSessionId());
+        SessionInformation leftover = new SessionInformation(usernameOf(eldest.getPrincipal()),
+                eldest.getSessionId(), eldest.getLastRequest());
+        leftover.expireNow();
+        synchronized (evictedSessions) {
+            evictedSessions.put(leftover.getSessionId(), leftover);
+        }
+        evicted.incrementAndGet();
+        return true;
+    }
+
+    private int removeIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        int removed = 0;
+        for (SessionInformation session : sessions.values()) {
+            if (session.getLastRequest().getTime() < cutoff) {
+                removeSessionInformation(session.getSessionId());
+                removed++;
+            }
+        }
+        synchronized (evictedSessions) {
+            Iterator<SessionInformation> it = evictedSessions.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().getLastRequest().getTime() < cutoff) {
+                    it.remove();
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    private static String usernameOf(Object principal) {
+        return principal instanceof UserDetails ? ((UserDetails) principal).getUsername() : String.valueOf(principal);
+    }
+
+    private static Object keyOf(Object principal) {
+        if (principal instanceof User) {
+            return ((User) principal).getId();
+        }
+        if (principal instanceof UserDetails) {
+            return ((UserDetails) principal).getUsername();
+        }
+        return String.valueOf(principal);
+    }
+
+    private static String tenantOf(Object principal) {
+        return principal instanceof User ? ((User) principal).getTenantId() : TenantContext.DEFAULT_TENANT;
+    }
+}
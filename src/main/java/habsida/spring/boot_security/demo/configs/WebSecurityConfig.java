@@ -1,12 +1,14 @@
 package habsida.spring.boot_security.demo.configs;
 
+import habsida.spring.boot_security.demo.service.LoginActivityTracker;
 import habsida.spring.boot_security.demo.service.UserServiceImpl;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
+import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,9 +17,13 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.session.HttpSessionEventPublisher;
 
 @Configuration
 @EnableWebSecurity
+// Route rules stay coarse (by role); operations are checked against the permission matrix
+@EnableGlobalMethodSecurity(prePostEnabled = true)
 public class WebSecurityConfig {
 
     private final UserServiceImpl userServiceImpl;
@@ -26,14 +32,24 @@ public class WebSecurityConfig {
 
     private final CustomAuthenticationFailureHandler customAuthenticationFailureHandler;
 
+    private final LoginThrottle loginThrottle;
+
+    private final LoginActivityTracker loginActivityTracker;
+
+    private final UserSessionRegistry userSessionRegistry;
+
+    private final int maxSessionsPerUser;
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
                 .authenticationProvider(daoAuthenticationProvider())
+                .addFilterBefore(new LoginThrottleFilter(loginThrottle), UsernamePasswordAuthenticationFilter.class)
                 .authorizeRequests(auth -> auth
                         .antMatchers(HttpMethod.GET, "/api/admin/**").hasRole("ADMIN")
                         .antMatchers(HttpMethod.POST, "/api/admin/**").hasRole("ADMIN")
                         .antMatchers(HttpMethod.PUT, "/api/admin/**").hasRole("ADMIN")
+                        .antMatchers(HttpMethod.PATCH, "/api/admin/**").hasRole("ADMIN")
                         .antMatchers(HttpMethod.DELETE, "/api/admin/**").hasRole("ADMIN")
                         .antMatchers("/admin/**").hasRole("ADMIN")
                         .antMatchers("/user/**").hasAnyRole("USER", "ADMIN")
@@ -50,6 +66,12 @@ public class WebSecurityConfig {
                         .failureHandler(customAuthenticationFailureHandler)
                         .permitAll()
                 )
+                // Expired sessions (disabled user, changed roles, over the per-user limit) end on their next request
+                .sessionManagement(session -> session
+                        .maximumSessions(maxSessionsPerUser)
+                        .sessionRegistry(userSessionRegistry)
+                        .expiredUrl("/login?expired")
+                )
                 .logout(logout -> logout
                         .logoutUrl("/logout")
                         .logoutSuccessUrl("/login")
@@ -67,14 +89,28 @@ public class WebSecurityConfig {
         return authProvider;
     }
 
-    public WebSecurityConfig(UserServiceImpl userServiceImpl, PasswordEncoder passwordEncoder, CustomAuthenticationFailureHandler customAuthenticationFailureHandler) {
+    public WebSecurityConfig(UserServiceImpl userServiceImpl, PasswordEncoder passwordEncoder,
+                             CustomAuthenticationFailureHandler customAuthenticationFailureHandler,
+                             LoginThrottle loginThrottle, LoginActivityTracker loginActivityTracker,
+                             UserSessionRegistry userSessionRegistry,
+                             @Value("${app.sessions.max-per-user:10}") int maxSessionsPerUser) {
         this.userServiceImpl = userServiceImpl;
         this.passwordEncoder = passwordEncoder;
         this.customAuthenticationFailureHandler = customAuthenticationFailureHandler;
+        this.loginThrottle = loginThrottle;
+        this.loginActivityTracker = loginActivityTracker;
+        this.userSessionRegistry = userSessionRegistry;
+        this.maxSessionsPerUser = maxSessionsPerUser;
     }
 
     @Bean
     public AuthenticationSuccessHandler successUserHandler() {
-        return new SuccessUserHandler();
+        return new SuccessUserHandler(loginThrottle, loginActivityTracker);
+    }
+
+    // Lets the registry hear about sessions the container destroys on timeout
+    @Bean
+    public HttpSessionEventPublisher httpSessionEventPublisher() {
+        return new HttpSessionEventPublisher();
     }
 }
@@ -1,20 +1,37 @@
 package habsida.spring.boot_security.demo.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import habsida.spring.boot_security.demo.configs.TenantContext;
 import habsida.spring.boot_security.demo.dto.ApiResponse;
 import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.dto.UserMapper;
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
 import habsida.spring.boot_security.demo.dto.RoleDto;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.AuditLog;
+import habsida.spring.boot_security.demo.service.PhotoCache;
+import habsida.spring.boot_security.demo.service.UserArchiver;
 import habsida.spring.boot_security.demo.service.UserService;
 import habsida.spring.boot_security.demo.service.RoleService;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -26,22 +43,42 @@ public class AdminRestController {
     private final UserService userService;
     private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
-
-
-    public AdminRestController(UserService userService, RoleService roleService, PasswordEncoder passwordEncoder) {
+    private final AuditLog auditLog;
+    private final ObjectMapper objectMapper;
+    private final PhotoCache photoCache;
+    private final UserArchiver userArchiver;
+    private final UserMapper userMapper;
+
+    public AdminRestController(UserService userService, RoleService roleService, PasswordEncoder passwordEncoder,
+                               AuditLog auditLog, ObjectMapper objectMapper, PhotoCache photoCache,
+                               UserArchiver userArchiver, UserMapper userMapper) {
         this.userService = userService;
         this.roleService = roleService;
         this.passwordEncoder = passwordEncoder;
+        this.auditLog = auditLog;
+        this.objectMapper = objectMapper;
+        this.photoCache = photoCache;
+        this.userArchiver = userArchiver;
+        this.userMapper = userMapper;
     }
     /**
-     * Get all users with roles for admin dashboard
+     * Get all users for admin dashboard. Returns compact summaries unless {@code fields}
+     * asks for something only the full DTO has.
      */
     @GetMapping("/users")
-    public ResponseEntity<ApiResponse<List<UserDto>>> getAllUsersWithRoles() {
+    @PreAuthorize("hasPermission(null, 'users:read')")
+    public ResponseEntity<ApiResponse<List<?>>> getAllUsersWithRoles(@RequestParam(required = false) String fields) {
         try {
+            String unknown = SparseFieldsetAdvice.unknownField(fields);
+            if (unknown != null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error("Unknown field: " + unknown));
+            }
+            if (UserSummaryDto.covers(fields)) {
+                return ResponseEntity.ok(ApiResponse.success("Users retrieved successfully", userService.findAllSummaries()));
+            }
             List<User> users = userService.findAllWithRoles();
             List<UserDto> userDtos = users.stream()
-                    .map(this::convertToDto)
+                    .map(userMapper::toDto)
                     .collect(Collectors.toList());
 
             return ResponseEntity.ok(ApiResponse.success("Users retrieved successfully", userDtos));
@@ -51,6 +88,59 @@ public class AdminRestController {
         }
     }
 
+    /**
+     * Stream all user summaries straight from a database cursor (?stream=true). The ApiResponse
+     * envelope and each user are written with a JsonGenerator as rows arrive, so no list is built.
+     * Errors after the first byte can only abort the response, not change its status. The body is
+     * written on an async thread, so it runs as the request's tenant explicitly.
+     */
+    @GetMapping(value = "/users", params = "stream=true")
+    @PreAuthorize("hasPermission(null, 'users:read')")
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam(required = false) String fields) {
+        if (!UserSummaryDto.covers(fields)) {
+            ApiResponse<Void> error = ApiResponse.error("Streaming supports summary fields only: " + fields);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_JSON)
+                    .body(outputStream -> objectMapper.writeValue(outputStream, error));
+        }
+        ObjectWriter writer = fields == null || fields.trim().isEmpty()
+                ? objectMapper.writer()
+                : objectMapper.writer(SparseFieldsetAdvice.filtersFor(fields));
+        // Let the generator's buffer decide when to hit the socket instead of flushing per user
+        ObjectWriter userWriter = writer.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        String tenant = TenantContext.getOrDefault();
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                TenantContext.runAs(tenant, () -> writeSummaries(outputStream, userWriter));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private void writeSummaries(OutputStream outputStream, ObjectWriter userWriter) {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartObject();
+            generator.writeBooleanField("success", true);
+            generator.writeStringField("message", "Users retrieved successfully");
+            generator.writeArrayFieldStart("data");
+            userService.forEachSummary(summary -> {
+                try {
+                    userWriter.writeValue(generator, summary);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+            generator.writeNullField("errors");
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Get current logged-in user
      */
@@ -58,11 +148,10 @@ public class AdminRestController {
     public ResponseEntity<ApiResponse<UserDto>> getCurrentUser(@AuthenticationPrincipal UserDetails loggedInUser) {
         try {
             String email = loggedInUser.getUsername();
-            Optional<User> currentUser = userService.findByEmail(email);
+            Optional<UserDto> currentUser = userService.findCurrentUser(email);
 
             if (currentUser.isPresent()) {
-                UserDto userDto = convertToDto(currentUser.get());
-                return ResponseEntity.ok(ApiResponse.success("Current user retrieved successfully", userDto));
+                return ResponseEntity.ok(ApiResponse.success("Current user retrieved successfully", currentUser.get()));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.error("Current user not found"));
@@ -79,12 +168,7 @@ public class AdminRestController {
     @GetMapping("/roles")
     public ResponseEntity<ApiResponse<List<RoleDto>>> getAllRoles() {
         try {
-            List<Role> roles = roleService.findAll();
-            List<RoleDto> roleDtos = roles.stream()
-                    .map(this::convertRoleToDto)
-                    .collect(Collectors.toList());
-
-            return ResponseEntity.ok(ApiResponse.success("Roles retrieved successfully", roleDtos));
+            return ResponseEntity.ok(ApiResponse.success("Roles retrieved successfully", roleService.findAllDtos()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(ApiResponse.error("Error retrieving roles: " + e.getMessage()));
@@ -95,6 +179,7 @@ public class AdminRestController {
      * Create new user
      */
     @PostMapping("/users")
+    @PreAuthorize("hasPermission(null, 'users:create')")
     public ResponseEntity<ApiResponse<UserDto>> createUser(@RequestBody Map<String, Object> request) {
         try {
             if (request.get("firstName") == null || ((String) request.get("firstName")).trim().isEmpty()) {
@@ -158,7 +243,8 @@ public class AdminRestController {
             user.setRoles(roles);
             userService.saveUser(user);
 
-            UserDto userDto = convertToDto(user);
+            UserDto userDto = userMapper.toDto(user);
+            auditLog.record("CREATE", "USER", user.getId(), null, userDto);
             return ResponseEntity.status(HttpStatus.CREATED)
                     .body(ApiResponse.success("User created successfully", userDto));
         } catch (Exception e) {
@@ -170,8 +256,15 @@ public class AdminRestController {
      * Update existing user
      */
     @PutMapping("/users/{id}")
-    public ResponseEntity<ApiResponse<UserDto>> updateUser(@PathVariable Long id, @RequestBody Map<String, Object> request) {
+    @PreAuthorize("hasPermission(null, 'users:update')")
+    public ResponseEntity<ApiResponse<UserDto>> updateUser(@PathVariable Long id,
+                                                           @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                                           @RequestBody Map<String, Object> request) {
         try {
+            if (ifMatch == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED)
+                        .body(ApiResponse.error("If-Match header with the user's version is required"));
+            }
             Optional<User> existingUser = userService.findById(id);
             if (!existingUser.isPresent()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -179,6 +272,12 @@ public class AdminRestController {
             }
 
             User user = existingUser.get();
+            if (!EntityTags.matches(ifMatch, user.getVersion())) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                        .eTag(EntityTags.of(user.getVersion()))
+                        .body(ApiResponse.error("User was modified by someone else, reload and try again"));
+            }
+            UserDto before = userMapper.toDto(user);
 
             user.setFirstName((String) request.get("firstName"));
             user.setLastName((String) request.get("lastName"));
@@ -192,7 +291,6 @@ public class AdminRestController {
               user.setPassword(passwordEncoder.encode(password));
             }
 
-
             @SuppressWarnings("unchecked")
             List<?> roleIdsRaw = (List<?>) request.get("roleIds");
             if (roleIdsRaw == null || roleIdsRaw.isEmpty()) {
@@ -210,24 +308,69 @@ public class AdminRestController {
                             .orElseThrow(() -> new RuntimeException("Role not found with ID: " + roleId)))
                     .collect(Collectors.toSet());
             user.setRoles(roles);
-            userService.saveUser(user);
-            UserDto userDto = convertToDto(user);
-
-            return ResponseEntity.ok(ApiResponse.success("User updated successfully", userDto));
+            user = userService.saveUser(user);
+            UserDto userDto = userMapper.toDto(user);
+            auditLog.record("UPDATE", "USER", id, before, userDto);
+
+            return ResponseEntity.ok()
+                    .eTag(EntityTags.of(user.getVersion()))
+                    .body(ApiResponse.success("User updated successfully", userDto));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponse.error("User was modified by someone else, reload and try again"));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error("Failed to update user: " + e.getMessage()));
+        }
+    }
+    /**
+     * Partially update user (JSON Merge Patch); only the columns present in the patch are written
+     */
+    @PatchMapping(value = "/users/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize("hasPermission(null, 'users:update')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> patchUser(@PathVariable Long id,
+                                                                      @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                                                      @RequestBody Map<String, Object> patch) {
+        try {
+            Long expectedVersion = EntityTags.parseVersion(ifMatch);
+            if (expectedVersion == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED)
+                        .body(ApiResponse.error("If-Match header with the user's version is required"));
+            }
+            Long version = userService.patchUser(id, expectedVersion, patch);
+
+            Map<String, Object> applied = new HashMap<>(patch);
+            applied.remove("password");
+            auditLog.record("PATCH", "USER", id, null, applied);
+            applied.put("id", id);
+            applied.put("version", version);
+
+            return ResponseEntity.ok()
+                    .eTag(EntityTags.of(version))
+                    .body(ApiResponse.success("User updated successfully", applied));
+        } catch (EntityNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("User not found with ID: " + id));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponse.error("User was modified by someone else, reload and try again"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(ApiResponse.error("Failed to update user: " + e.getMessage()));
         }
     }
+
     /**
      * Delete user
      */
     @DeleteMapping("/users/{id}")
+    @PreAuthorize("hasPermission(null, 'users:delete')")
     public ResponseEntity<ApiResponse<String>> deleteUser(@PathVariable Long id) {
         try {
             Optional<User> user = userService.findById(id);
             if (user.isPresent()) {
                 userService.deleteUser(id);
+                auditLog.record("DELETE", "USER", id, userMapper.toDto(user.get()), null);
                 return ResponseEntity.ok(ApiResponse.success("User deleted successfully", 
                         "User with ID " + id + " has been deleted"));
             } else {
@@ -244,15 +387,18 @@ public class AdminRestController {
      * Enable user
      */
     @PutMapping("/users/{id}/enable")
+    @PreAuthorize("hasPermission(null, 'users:disable')")
     public ResponseEntity<ApiResponse<UserDto>> enableUser(@PathVariable Long id) {
         try {
             Optional<User> userOpt = userService.findById(id);
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
+                UserDto before = userMapper.toDto(user);
                 user.setActive(true);
                 userService.saveUser(user);
                 
-                UserDto userDto = convertToDto(user);
+                UserDto userDto = userMapper.toDto(user);
+                auditLog.record("ENABLE", "USER", id, before, userDto);
                 return ResponseEntity.ok(ApiResponse.success("User enabled successfully", userDto));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -268,15 +414,18 @@ public class AdminRestController {
      * Disable user
      */
     @PutMapping("/users/{id}/disable")
+    @PreAuthorize("hasPermission(null, 'users:disable')")
     public ResponseEntity<ApiResponse<UserDto>> disableUser(@PathVariable Long id) {
         try {
             Optional<User> userOpt = userService.findById(id);
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
+                UserDto before = userMapper.toDto(user);
                 user.setActive(false);
                 userService.saveUser(user);
                 
-                UserDto userDto = convertToDto(user);
+                UserDto userDto = userMapper.toDto(user);
+                auditLog.record("DISABLE", "USER", id, before, userDto);
                 return ResponseEntity.ok(ApiResponse.success("User disabled successfully", userDto));
             } else {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -287,25 +436,72 @@ public class AdminRestController {
                     .body(ApiResponse.error("Error disabling user: " + e.getMessage()));
         }
     }
+    /**
+     * Restore a deleted or archived user
+     */
+    @PostMapping("/users/{id}/restore")
+    @PreAuthorize("hasPermission(null, 'users:delete')")
+    public ResponseEntity<ApiResponse<UserDto>> restoreUser(@PathVariable Long id) {
+        try {
+            if (!userArchiver.restore(id)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.error("No deleted or archived user with ID: " + id));
+            }
+            Optional<User> restored = userService.findById(id);
+            if (!restored.isPresent()) {
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(ApiResponse.error("User restored but could not be loaded: " + id));
+            }
+            UserDto userDto = userMapper.toDto(restored.get());
+            auditLog.record("RESTORE", "USER", id, null, userDto);
+            return ResponseEntity.ok(ApiResponse.success("User restored successfully", userDto));
+        } catch (IllegalStateException e) {
+            // Only thrown by restore(), when the archived user's email or username was taken meanwhile
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error restoring user: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * List archived users in id order, a page at a time
+     */
+    @GetMapping("/users/archived")
+    @PreAuthorize("hasPermission(null, 'users:read')")
+    public ResponseEntity<ApiResponse<List<UserSummaryDto>>> getArchivedUsers(
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "50") int limit) {
+        try {
+            List<UserSummaryDto> archived = userArchiver.findArchived(afterId, Math.min(limit, 500));
+            return ResponseEntity.ok(ApiResponse.success("Archived users retrieved successfully", archived));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error retrieving archived users: " + e.getMessage()));
+        }
+    }
+
     /**
      * Get dashboard statistics
      */
     @GetMapping("/dashboard/stats")
+    @PreAuthorize("hasPermission(null, 'users:read')")
     public ResponseEntity<ApiResponse<Map<String, Object>>> getDashboardStats() {
         try {
-            List<User> allUsers = userService.findAllUsers();
+            // Aggregates run in the database instead of loading every user with its roles
+            long totalUsers = userService.countUsers();
+            long adminCount = userService.countUsersWithRole("ADMIN");
+            long activeCount = userService.countActiveUsers();
             List<Role> allRoles = roleService.findAll();
 
-            long adminCount = allUsers.stream()
-                    .filter(user -> user.getRoles().stream().anyMatch(role -> "ADMIN".equals(role.getName())))
-                    .count();
-
-            long userCount = allUsers.size() - adminCount;
+            long userCount = totalUsers - adminCount;
 
             Map<String, Object> stats = new HashMap<>();
-            stats.put("totalUsers", allUsers.size());
+            stats.put("totalUsers", totalUsers);
             stats.put("adminUsers", adminCount);
             stats.put("regularUsers", userCount);
+            stats.put("activeUsers", activeCount);
             stats.put("totalRoles", allRoles.size());
 
             return ResponseEntity.ok(ApiResponse.success("Dashboard statistics retrieved successfully", stats));
@@ -314,37 +510,35 @@ public class AdminRestController {
                     .body(ApiResponse.error("Error retrieving dashboard statistics: " + e.getMessage()));
         }
     }
+
     /**
-     * Convert User entity to UserDto
+     * Get the current tenant's photo cache counters (hit ratio, entries, used bytes)
      */
-    private UserDto convertToDto(User user) {
-        return UserDto.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .age(user.getAge())
-                .email(user.getEmail())
-                .photo(user.getPhoto())
-                .photoContentType(user.getPhotoContentType())
-                .roles(user.getRoles().stream()
-                        .map(Role::getName)
-                        .collect(Collectors.toSet()))
-                .createdAt(user.getCreatedAt())
-                .updatedAt(user.getUpdatedAt())
-                .isActive(user.isActive())
-                .build();
+    @GetMapping("/photo-cache/stats")
+    @PreAuthorize("hasPermission(null, 'diagnostics:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getPhotoCacheStats() {
+        return ResponseEntity.ok(ApiResponse.success("Photo cache statistics retrieved successfully",
+                photoCache.stats(TenantContext.getOrDefault())));
     }
+
+    /**
+     * Get archival job counters
+     */
+    @GetMapping("/archive/stats")
+    @PreAuthorize("hasPermission(null, 'diagnostics:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getArchiveStats() {
+        return ResponseEntity.ok(ApiResponse.success("Archive statistics retrieved successfully", userArchiver.stats()));
+    }
+
     /**
-     * Convert Role entity to RoleDto
+     * Get counters of the coalesced current-user and role lookups
      */
-    private RoleDto convertRoleToDto(Role role) {
-        return RoleDto.builder()
-                .id(role.getId())
-                .name(role.getName())
-                .description(role.getDescription())
-                .createdAt(role.getCreatedAt())
-                .updatedAt(role.getUpdatedAt())
-                .build();
+    @GetMapping("/lookups/stats")
+    @PreAuthorize("hasPermission(null, 'diagnostics:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getLookupStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("currentUser", userService.currentUserLookupStats());
+        stats.put("roles", roleService.roleLookupStats());
+        return ResponseEntity.ok(ApiResponse.success("Lookup statistics retrieved successfully", stats));
     }
 }
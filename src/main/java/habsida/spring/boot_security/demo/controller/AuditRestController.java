@@ -0,0 +1,70 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.dto.ApiResponse;
+import habsida.spring.boot_security.demo.model.AuditEntry;
+import habsida.spring.boot_security.demo.repository.AuditEntryRepository;
+import habsida.spring.boot_security.demo.service.AuditLog;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/audit")
+@PreAuthorize("hasPermission(null, 'audit:read')")
+@CrossOrigin(origins = "*")
+public class AuditRestController {
+
+    private static final int MAX_PAGE_SIZE = 200;
+
+    private final AuditEntryRepository auditEntryRepository;
+    private final AuditLog auditLog;
+
+    public AuditRestController(AuditEntryRepository auditEntryRepository, AuditLog auditLog) {
+        this.auditEntryRepository = auditEntryRepository;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Get the current tenant's audit entries, newest first
+     */
+    @GetMapping
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAuditEntries(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size,
+            @RequestParam(required = false) String actor) {
+        try {
+            PageRequest pageRequest = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+            String tenant = TenantContext.getOrDefault();
+            Page<AuditEntry> entries = actor == null || actor.isEmpty()
+                    ? auditEntryRepository.findByTenantIdOrderByIdDesc(tenant, pageRequest)
+                    : auditEntryRepository.findByTenantIdAndActorOrderByIdDesc(tenant, actor, pageRequest);
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("content", entries.getContent());
+            result.put("page", entries.getNumber());
+            result.put("size", entries.getSize());
+            result.put("totalElements", entries.getTotalElements());
+            result.put("totalPages", entries.getTotalPages());
+
+            return ResponseEntity.ok(ApiResponse.success("Audit entries retrieved successfully", result));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error retrieving audit entries: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get audit pipeline counters (published, written, dropped, pending)
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getAuditStats() {
+        return ResponseEntity.ok(ApiResponse.success("Audit statistics retrieved successfully", auditLog.stats()));
+    }
+}
@@ -0,0 +1,34 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.dto.ApiResponse;
+import habsida.spring.boot_security.demo.service.SlowRequestLog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/diagnostics")
+@CrossOrigin(origins = "*")
+public class DiagnosticsRestController {
+
+    private final SlowRequestLog slowRequestLog;
+
+    public DiagnosticsRestController(SlowRequestLog slowRequestLog) {
+        this.slowRequestLog = slowRequestLog;
+    }
+
+    /**
+     * Get the slowest requests since startup, slowest first, with per-phase timings and the SQL
+     * each sent. Covers all tenants; entries hold paths and statement texts, never parameters.
+     */
+    @GetMapping("/slow-requests")
+    @PreAuthorize("hasPermission(null, 'diagnostics:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSlowRequests() {
+        Map<String, Object> body = new HashMap<>(slowRequestLog.stats());
+        body.put("requests", slowRequestLog.slowest());
+        return ResponseEntity.ok(ApiResponse.success("Slow requests retrieved successfully", body));
+    }
+}
@@ -0,0 +1,58 @@
+package habsida.spring.boot_security.demo.controller;
+
+/**
+ * ETag / If-Match helpers for entities carrying a JPA {@code @Version}.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    static String of(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    /**
+     * The version named by a single-tag If-Match header, or null if absent or not a version tag.
+     */
+    static Long parseVersion(String ifMatch) {
+        if (ifMatch == null) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * True if any entity tag in the If-Match header names the given version, or the header is "*".
+     */
+    static boolean matches(String ifMatch, Long version) {
+        String current = String.valueOf(version == null ? 0 : version);
+        for (String tag : ifMatch.split(",")) {
+            String value = tag.trim();
+            if ("*".equals(value)) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            if (current.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,94 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.dto.ApiResponse;
+import habsida.spring.boot_security.demo.service.JobScheduler;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+// Jobs are shared by all tenants, so changing them needs jobs:run, a platform permission
+@RestController
+@RequestMapping("/api/admin/jobs")
+@CrossOrigin(origins = "*")
+public class JobRestController {
+
+    private final JobScheduler jobScheduler;
+
+    public JobRestController(JobScheduler jobScheduler) {
+        this.jobScheduler = jobScheduler;
+    }
+
+    /**
+     * List maintenance jobs with their counters and last run
+     */
+    @GetMapping
+    @PreAuthorize("hasPermission(null, 'diagnostics:read')")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getJobs() {
+        return ResponseEntity.ok(ApiResponse.success("Jobs retrieved successfully", jobScheduler.list()));
+    }
+
+    /**
+     * Get one job with its recent runs, newest first
+     */
+    @GetMapping("/{name}")
+    @PreAuthorize("hasPermission(null, 'diagnostics:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getJob(@PathVariable String name) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("Job retrieved successfully", jobScheduler.describe(name)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Start a run now; refused while the job is running on all of its threads
+     */
+    @PostMapping("/{name}/run")
+    @PreAuthorize("hasPermission(null, 'jobs:run')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> runJob(@PathVariable String name) {
+        try {
+            Long runId = jobScheduler.trigger(name);
+            if (runId == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(ApiResponse.error("Job is already running at its concurrency limit: " + name));
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Job started", Collections.<String, Object>singletonMap("runId", runId)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Stop scheduled runs of a job; a run in progress completes
+     */
+    @PostMapping("/{name}/pause")
+    @PreAuthorize("hasPermission(null, 'jobs:run')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> pauseJob(@PathVariable String name) {
+        try {
+            jobScheduler.pause(name);
+            return ResponseEntity.ok(ApiResponse.success("Job paused", jobScheduler.describe(name)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Resume scheduled runs of a paused job
+     */
+    @PostMapping("/{name}/resume")
+    @PreAuthorize("hasPermission(null, 'jobs:run')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> resumeJob(@PathVariable String name) {
+        try {
+            jobScheduler.resume(name);
+            return ResponseEntity.ok(ApiResponse.success("Job resumed", jobScheduler.describe(name)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package habsida.spring.boot_security.demo.controller;
 
+import habsida.spring.boot_security.demo.configs.TenantContext;
 import habsida.spring.boot_security.demo.dto.ApiResponse;
 import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.ImageType;
+import habsida.spring.boot_security.demo.service.PhotoCache;
+import habsida.spring.boot_security.demo.service.PhotoTooLargeException;
 import habsida.spring.boot_security.demo.service.UserService;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -24,8 +32,14 @@ public class PhotoRestController {
 
 
     private final UserService userService;
-    public PhotoRestController(UserService userService) {
+    private final PhotoCache photoCache;
+    private final DataSize maxPhotoSize;
+
+    public PhotoRestController(UserService userService, PhotoCache photoCache,
+                               @Value("${app.photo.max-size:5MB}") DataSize maxPhotoSize) {
         this.userService = userService;
+        this.photoCache = photoCache;
+        this.maxPhotoSize = maxPhotoSize;
     }
 
     @PostMapping("/upload")
@@ -40,25 +54,16 @@ public class PhotoRestController {
                         .body(ApiResponse.error("Please select a file to upload"));
             }
 
-            // Check file type
-            String contentType = file.getContentType();
-            if (contentType == null || !contentType.startsWith("image/")) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("Only image files are allowed"));
-            }
-
-            // Check file size (max 5MB)
-            if (file.getSize() > 5 * 1024 * 1024) {
-                return ResponseEntity.badRequest()
-                        .body(ApiResponse.error("File size must be less than 5MB"));
-            }
-
-            // Convert to byte array and save to database
-            byte[] photoBytes = file.getBytes();
-            userService.updateUserPhoto(userDetails.getUsername(), photoBytes, contentType);
+            // The spooled upload is read by the service (twice for new content); type comes from its magic bytes
+            ImageType type = userService.updateUserPhoto(userDetails.getUsername(), file);
 
-            return ResponseEntity.ok(ApiResponse.success("Photo uploaded successfully", "Photo saved to database"));
+            return ResponseEntity.ok(ApiResponse.success("Photo uploaded successfully", type.getMediaType()));
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        } catch (PhotoTooLargeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(ApiResponse.error("File size must be at most " + maxSizeText(e.getMaxBytes())));
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(ApiResponse.error("Failed to upload photo: " + e.getMessage()));
@@ -68,25 +73,46 @@ public class PhotoRestController {
         }
     }
 
+    /**
+     * Uploads over spring.servlet.multipart.max-file-size are rejected while the multipart
+     * request is parsed (lazily, so this handler sees it) before any of it reaches the service.
+     */
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<ApiResponse<String>> uploadTooLarge(MaxUploadSizeExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(ApiResponse.error("File size must be at most " + maxSizeText(maxPhotoSize.toBytes())));
+    }
+
+    private static String maxSizeText(long bytes) {
+        return bytes % (1024 * 1024) == 0 ? bytes / (1024 * 1024) + "MB" : bytes / 1024 + "KB";
+    }
+
     @GetMapping("/user/{userId}")
-    public ResponseEntity<byte[]> getUserPhoto(@PathVariable Long userId) {
+    @PreAuthorize("hasPermission(null, 'photos:read:any')")
+    public ResponseEntity<Resource> getUserPhoto(@PathVariable Long userId) {
         try {
-            Optional<User> userOpt = userService.findById(userId);
-            if (userOpt.isPresent()) {
-                User user = userOpt.get();
-                if (user.getPhoto() != null && user.getPhoto().length > 0) {
-                    HttpHeaders headers = new HttpHeaders();
-                    String contentType = user.getPhotoContentType();
-                    if (contentType != null && !contentType.trim().isEmpty()) {
-                        headers.setContentType(MediaType.parseMediaType(contentType));
-                    } else {
-                        // Default to image/jpeg if content type is not set
-                        headers.setContentType(MediaType.IMAGE_JPEG);
-                    }
-                    return new ResponseEntity<>(user.getPhoto(), headers, HttpStatus.OK);
+            String tenant = TenantContext.getOrDefault();
+            Optional<Long> version = userService.findVersionById(userId);
+            if (!version.isPresent()) {
+                return ResponseEntity.notFound().build();
+            }
+            PhotoCache.Entry photo = photoCache.get(tenant, userId, version.get());
+            if (photo == null) {
+                long generation = photoCache.generation();
+                Optional<User> userOpt = userService.findById(userId);
+                if (!userOpt.isPresent() || !userOpt.get().hasPhoto()) {
+                    return ResponseEntity.notFound().build();
                 }
+                User user = userOpt.get();
+                String contentType = user.getPhotoContentType();
+                // Default to image/jpeg if content type is not set
+                photo = photoCache.put(tenant, userId, user.getVersion(),
+                        contentType != null && !contentType.trim().isEmpty() ? contentType : MediaType.IMAGE_JPEG_VALUE,
+                        user.getPhoto(), generation);
             }
-            return ResponseEntity.notFound().build();
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType(photo.getContentType()));
+            return new ResponseEntity<>(photo.asResource(), headers, HttpStatus.OK);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -142,7 +168,7 @@ public class PhotoRestController {
     @DeleteMapping("/current")
     public ResponseEntity<ApiResponse<String>> deleteCurrentUserPhoto(@AuthenticationPrincipal UserDetails userDetails) {
         try {
-            userService.updateUserPhoto(userDetails.getUsername(), null, null);
+            userService.deleteUserPhoto(userDetails.getUsername());
             return ResponseEntity.ok(ApiResponse.success("Photo deleted successfully", null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -2,32 +2,38 @@ package habsida.spring.boot_security.demo.controller;
 
 import habsida.spring.boot_security.demo.dto.ApiResponse;
 import habsida.spring.boot_security.demo.dto.RoleDto;
+import habsida.spring.boot_security.demo.dto.RoleMapper;
 import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.service.AuditLog;
 import habsida.spring.boot_security.demo.service.RoleService;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/roles")
 @CrossOrigin(origins = "*")
 public class RoleRestController {
 
+    private final RoleService roleService;
+    private final AuditLog auditLog;
+    private final RoleMapper roleMapper;
 
-    private RoleService roleService;
+    public RoleRestController(RoleService roleService, AuditLog auditLog, RoleMapper roleMapper) {
+        this.roleService = roleService;
+        this.auditLog = auditLog;
+        this.roleMapper = roleMapper;
+    }
 
     @GetMapping
     public ResponseEntity<ApiResponse<List<RoleDto>>> getAllRoles() {
         try {
-            List<Role> roles = roleService.findAll();
-            List<RoleDto> roleDtos = roles.stream()
-                    .map(this::convertToDto)
-                    .collect(Collectors.toList());
-            return ResponseEntity.ok(ApiResponse.success("Roles retrieved successfully", roleDtos));
+            return ResponseEntity.ok(ApiResponse.success("Roles retrieved successfully", roleService.findAllDtos()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("Error retrieving roles: " + e.getMessage()));
         }
@@ -38,7 +44,9 @@ public class RoleRestController {
         try {
             Optional<Role> role = roleService.findById(id);
             if (role.isPresent()) {
-                return ResponseEntity.ok(ApiResponse.success("Role retrieved successfully", convertToDto(role.get())));
+                return ResponseEntity.ok()
+                        .eTag(EntityTags.of(role.get().getVersion()))
+                        .body(ApiResponse.success("Role retrieved successfully", roleMapper.toDto(role.get())));
             } else {
                 return ResponseEntity.notFound().build();
             }
@@ -48,39 +56,67 @@ public class RoleRestController {
     }
 
     @PostMapping
+    @PreAuthorize("hasPermission(null, 'roles:write')")
     public ResponseEntity<ApiResponse<RoleDto>> createRole(@RequestBody RoleDto roleDto) {
         try {
-            Role role = convertToEntity(roleDto);
+            Role role = roleMapper.toEntity(roleDto);
             roleService.save(role);
-            return ResponseEntity.ok(ApiResponse.success("Role created successfully", convertToDto(role)));
+            RoleDto created = roleMapper.toDto(role);
+            auditLog.record("CREATE", "ROLE", role.getId(), null, created);
+            return ResponseEntity.ok(ApiResponse.success("Role created successfully", created));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("Error creating role: " + e.getMessage()));
         }
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<ApiResponse<RoleDto>> updateRole(@PathVariable Long id, @RequestBody RoleDto roleDto) {
+    @PreAuthorize("hasPermission(null, 'roles:write')")
+    public ResponseEntity<ApiResponse<RoleDto>> updateRole(@PathVariable Long id,
+                                                           @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                                           @RequestBody RoleDto roleDto) {
         try {
+            if (ifMatch == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED)
+                        .body(ApiResponse.error("If-Match header with the role's version is required"));
+            }
             Optional<Role> existingRole = roleService.findById(id);
             if (existingRole.isPresent()) {
                 Role role = existingRole.get();
+                if (!EntityTags.matches(ifMatch, role.getVersion())) {
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                            .eTag(EntityTags.of(role.getVersion()))
+                            .body(ApiResponse.error("Role was modified by someone else, reload and try again"));
+                }
+                RoleDto before = roleMapper.toDto(role);
                 role.setName(roleDto.getName());
-                roleService.save(role);
-                return ResponseEntity.ok(ApiResponse.success("Role updated successfully", convertToDto(role)));
+                if (roleDto.getPermissions() != null) {
+                    role.setPermissions(roleMapper.permissions(roleDto.getPermissions()));
+                }
+                role = roleService.save(role);
+                RoleDto updated = roleMapper.toDto(role);
+                auditLog.record("UPDATE", "ROLE", id, before, updated);
+                return ResponseEntity.ok()
+                        .eTag(EntityTags.of(role.getVersion()))
+                        .body(ApiResponse.success("Role updated successfully", updated));
             } else {
                 return ResponseEntity.notFound().build();
             }
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponse.error("Role was modified by someone else, reload and try again"));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("Error updating role: " + e.getMessage()));
         }
     }
 
     @DeleteMapping("/{id}")
+    @PreAuthorize("hasPermission(null, 'roles:write')")
     public ResponseEntity<ApiResponse<String>> deleteRole(@PathVariable Long id) {
         try {
             Optional<Role> role = roleService.findById(id);
             if (role.isPresent()) {
                 roleService.deleteById(id);
+                auditLog.record("DELETE", "ROLE", id, roleMapper.toDto(role.get()), null);
                 return ResponseEntity.ok(ApiResponse.success("Role deleted successfully", "Role with ID " + id + " has been deleted"));
             } else {
                 return ResponseEntity.notFound().build();
@@ -89,17 +125,4 @@ public class RoleRestController {
             return ResponseEntity.badRequest().body(ApiResponse.error("Error deleting role: " + e.getMessage()));
         }
     }
-
-    private RoleDto convertToDto(Role role) {
-        RoleDto dto = new RoleDto();
-        dto.setId(role.getId());
-        dto.setName(role.getName());
-        return dto;
-    }
-
-    private Role convertToEntity(RoleDto dto) {
-        Role role = new Role();
-        role.setName(dto.getName());
-        return role;
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package habsida.spring.boot_security.demo.controller;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.configs.UserSessionRegistry;
+import habsida.spring.boot_security.demo.dto.ApiResponse;
+import habsida.spring.boot_security.demo.service.UserService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/sessions")
+@CrossOrigin(origins = "*")
+public class SessionRestController {
+
+    private final UserSessionRegistry sessionRegistry;
+    private final UserService userService;
+
+    public SessionRestController(UserSessionRegistry sessionRegistry, UserService userService) {
+        this.sessionRegistry = sessionRegistry;
+        this.userService = userService;
+    }
+
+    /**
+     * List logged-in users of the current tenant with the last request of each of their sessions
+     */
+    @GetMapping
+    @PreAuthorize("hasPermission(null, 'users:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getActiveUsers() {
+        String tenant = TenantContext.getOrDefault();
+        List<Map<String, Object>> users = sessionRegistry.activeUsers(tenant);
+        Map<String, Object> body = new HashMap<>(sessionRegistry.stats(tenant));
+        body.put("users", users);
+        return ResponseEntity.ok(ApiResponse.success("Active sessions retrieved successfully", body));
+    }
+
+    /**
+     * Count logged-in users and their sessions in the current tenant
+     */
+    @GetMapping("/count")
+    @PreAuthorize("hasPermission(null, 'users:read')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getActiveSessionCount() {
+        return ResponseEntity.ok(ApiResponse.success("Active session count retrieved successfully",
+                sessionRegistry.stats(TenantContext.getOrDefault())));
+    }
+
+    /**
+     * Log a user out of all of their sessions
+     */
+    @DeleteMapping("/users/{userId}")
+    @PreAuthorize("hasPermission(null, 'users:disable')")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> expireUserSessions(@PathVariable Long userId) {
+        if (!userService.findById(userId).isPresent()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error("User not found with id: " + userId));
+        }
+        int expired = sessionRegistry.expireUserSessions(userId);
+        return ResponseEntity.ok(ApiResponse.success("User sessions expired",
+                Collections.<String, Object>singletonMap("expired", expired)));
+    }
+}
@@ -0,0 +1,69 @@
+package habsida.spring.boot_security.demo.controller;
+
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import habsida.spring.boot_security.demo.dto.UserDto;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Applies {@code ?fields=a,b,c} to user DTOs returned by GET requests of the user controllers:
+ * Jackson writes only the listed properties, the rest are never serialized. The handlers that
+ * take {@code fields} reject unknown names with {@link #unknownField} before doing any work,
+ * since by the time this advice runs the handler has already completed.
+ */
+@ControllerAdvice(assignableTypes = {UserRestController.class, AdminRestController.class})
+public class SparseFieldsetAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue bodyContainer, MediaType contentType,
+                                           MethodParameter returnType, ServerHttpRequest request,
+                                           ServerHttpResponse response) {
+        if (!(request instanceof ServletServerHttpRequest) || request.getMethod() != HttpMethod.GET) {
+            return;
+        }
+        String fields = ((ServletServerHttpRequest) request).getServletRequest().getParameter("fields");
+        if (fields == null || fields.trim().isEmpty()) {
+            return;
+        }
+        bodyContainer.setFilters(filtersFor(fields));
+    }
+
+    /**
+     * @return the first requested name the user DTO does not have, or null when all are known
+     */
+    static String unknownField(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return null;
+        }
+        for (String field : fields.split(",")) {
+            if (!UserDto.FIELDS.contains(field.trim())) {
+                return field.trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Filter provider that keeps only the comma-separated {@code fields} on user DTOs.
+     */
+    static SimpleFilterProvider filtersFor(String fields) {
+        Set<String> requested = new HashSet<>();
+        for (String field : Arrays.asList(fields.split(","))) {
+            requested.add(field.trim());
+        }
+        return new SimpleFilterProvider()
+                .addFilter(UserDto.FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(requested));
+    }
+}
@@ -2,14 +2,20 @@ package habsida.spring.boot_security.demo.controller;
 
 import habsida.spring.boot_security.demo.dto.ApiResponse;
 import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.dto.UserMapper;
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.AuditLog;
 import habsida.spring.boot_security.demo.service.UserService;
 import javax.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -17,6 +23,7 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 
+import javax.persistence.EntityNotFoundException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,23 +38,38 @@ import java.util.stream.Collectors;
 @Slf4j
 public class UserRestController {
 
+    // Users may edit their own profile; editing anyone else's needs users:update
+    static final String SELF_OR_USERS_UPDATE = "hasPermission(null, 'users:update') or "
+            + "(principal instanceof T(habsida.spring.boot_security.demo.model.User) and principal.id == #id)";
+
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
+    private final AuditLog auditLog;
+    private final UserMapper userMapper;
 
     /**
-     * Get all users
+     * Get all users. Returns compact summaries unless {@code fields} asks for
+     * something only the full DTO has.
      */
     @GetMapping
-    public ResponseEntity<ApiResponse<List<UserDto>>> getAllUsers() {
+    public ResponseEntity<ApiResponse<List<?>>> getAllUsers(@RequestParam(required = false) String fields) {
         try {
+            String unknown = SparseFieldsetAdvice.unknownField(fields);
+            if (unknown != null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error("Unknown field: " + unknown));
+            }
             log.info("Fetching all users");
-            List<User> users = userService.findAllUsers();
-            List<UserDto> userDtos = users.stream()
-                    .map(this::convertToDto)
-                    .collect(Collectors.toList());
+            List<?> users;
+            if (UserSummaryDto.covers(fields)) {
+                users = userService.findAllSummaries();
+            } else {
+                users = userService.findAllUsers().stream()
+                        .map(userMapper::toDto)
+                        .collect(Collectors.toList());
+            }
             
             log.info("Successfully retrieved {} users", users.size());
-            return ResponseEntity.ok(ApiResponse.success("Users retrieved successfully", userDtos));
+            return ResponseEntity.ok(ApiResponse.success("Users retrieved successfully", users));
         } catch (Exception e) {
             log.error("Error retrieving users: {}", e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -56,18 +78,25 @@ public class UserRestController {
     }
 
     /**
-     * Get user by ID
+     * Get user by ID; {@code ?fields=} limits the serialized properties
      */
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<UserDto>> getUserById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<UserDto>> getUserById(@PathVariable Long id,
+                                                            @RequestParam(required = false) String fields) {
         try {
+            String unknown = SparseFieldsetAdvice.unknownField(fields);
+            if (unknown != null) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error("Unknown field: " + unknown));
+            }
             log.info("Fetching user with ID: {}", id);
             Optional<User> user = userService.findById(id);
             
             if (user.isPresent()) {
-                UserDto userDto = convertToDto(user.get());
+                UserDto userDto = userMapper.toDto(user.get());
                 log.info("Successfully retrieved user with ID: {}", id);
-                return ResponseEntity.ok(ApiResponse.success("User retrieved successfully", userDto));
+                return ResponseEntity.ok()
+                        .eTag(EntityTags.of(userDto.getVersion()))
+                        .body(ApiResponse.success("User retrieved successfully", userDto));
             } else {
                 log.warn("User not found with ID: {}", id);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -84,6 +113,7 @@ public class UserRestController {
      * Create new user
      */
     @PostMapping
+    @PreAuthorize("hasPermission(null, 'users:create')")
     public ResponseEntity<ApiResponse<UserDto>> createUser(@Valid @RequestBody UserDto userDto) {
         try {
             log.info("Creating new user with email: {}", userDto.getEmail());
@@ -95,9 +125,11 @@ public class UserRestController {
                         .body(ApiResponse.error("User already exists with email: " + userDto.getEmail()));
             }
             
-            User user = convertToEntity(userDto);
+            User user = userMapper.toEntity(userDto);
+            user.setPassword(passwordEncoder.encode(userDto.getPassword()));
             userService.saveUser(user);
-            UserDto savedUserDto = convertToDto(user);
+            UserDto savedUserDto = userMapper.toDto(user);
+            auditLog.record("CREATE", "USER", user.getId(), null, savedUserDto);
             
             log.info("Successfully created user with ID: {}", user.getId());
             return ResponseEntity.status(HttpStatus.CREATED)
@@ -113,14 +145,27 @@ public class UserRestController {
      * Update existing user
      */
     @PutMapping("/{id}")
+    @PreAuthorize(SELF_OR_USERS_UPDATE)
     public ResponseEntity<ApiResponse<UserDto>> updateUser(@PathVariable Long id, 
+                                                          @RequestHeader(value = "If-Match", required = false) String ifMatch,
                                                           @Valid @RequestBody UserDto userDto) {
         try {
             log.info("Updating user with ID: {}", id);
+            if (ifMatch == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED)
+                        .body(ApiResponse.error("If-Match header with the user's version is required"));
+            }
             Optional<User> existingUser = userService.findById(id);
             
             if (existingUser.isPresent()) {
                 User user = existingUser.get();
+                if (!EntityTags.matches(ifMatch, user.getVersion())) {
+                    log.warn("Stale update rejected for user {}: If-Match {} but version is {}", id, ifMatch, user.getVersion());
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                            .eTag(EntityTags.of(user.getVersion()))
+                            .body(ApiResponse.error("User was modified by someone else, reload and try again"));
+                }
+                UserDto before = userMapper.toDto(user);
                 
                 // Check if email is being changed and if it already exists
                 if (!user.getEmail().equals(userDto.getEmail()) && 
@@ -142,16 +187,23 @@ public class UserRestController {
                     user.setPassword(passwordEncoder.encode(userDto.getPassword()));
                 }
                 
-                userService.saveUser(user);
-                UserDto updatedUserDto = convertToDto(user);
+                user = userService.saveUser(user);
+                UserDto updatedUserDto = userMapper.toDto(user);
+                auditLog.record("UPDATE", "USER", id, before, updatedUserDto);
                 
                 log.info("Successfully updated user with ID: {}", id);
-                return ResponseEntity.ok(ApiResponse.success("User updated successfully", updatedUserDto));
+                return ResponseEntity.ok()
+                        .eTag(EntityTags.of(user.getVersion()))
+                        .body(ApiResponse.success("User updated successfully", updatedUserDto));
             } else {
                 log.warn("User not found with ID: {}", id);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(ApiResponse.error("User not found with ID: " + id));
             }
+        } catch (ObjectOptimisticLockingFailureException e) {
+            log.warn("Concurrent update rejected for user {}", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponse.error("User was modified by someone else, reload and try again"));
         } catch (Exception e) {
             log.error("Error updating user with ID {}: {}", id, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -159,10 +211,63 @@ public class UserRestController {
         }
     }
 
+    /**
+     * Partially update user (JSON Merge Patch); only the columns present in the patch are written.
+     * Roles can only be changed through the admin API.
+     */
+    @PatchMapping(value = "/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    @PreAuthorize(SELF_OR_USERS_UPDATE)
+    public ResponseEntity<ApiResponse<Map<String, Object>>> patchUser(@PathVariable Long id,
+                                                                      @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                                                      @RequestBody Map<String, Object> patch) {
+        try {
+            log.info("Patching user with ID: {} fields {}", id, patch.keySet());
+            if (patch.containsKey("roleIds")) {
+                log.warn("Role change rejected on user patch for ID: {}", id);
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(ApiResponse.error("Field cannot be patched: roleIds"));
+            }
+            Long expectedVersion = EntityTags.parseVersion(ifMatch);
+            if (expectedVersion == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_REQUIRED)
+                        .body(ApiResponse.error("If-Match header with the user's version is required"));
+            }
+            Long version = userService.patchUser(id, expectedVersion, patch);
+
+            Map<String, Object> applied = new HashMap<>(patch);
+            applied.remove("password");
+            auditLog.record("PATCH", "USER", id, null, applied);
+            applied.put("id", id);
+            applied.put("version", version);
+
+            log.info("Successfully patched user with ID: {}", id);
+            return ResponseEntity.ok()
+                    .eTag(EntityTags.of(version))
+                    .body(ApiResponse.success("User updated successfully", applied));
+        } catch (EntityNotFoundException e) {
+            log.warn("User not found with ID: {}", id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("User not found with ID: " + id));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            log.warn("Concurrent update rejected for user {}", id);
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body(ApiResponse.error("User was modified by someone else, reload and try again"));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid patch for user {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.error(e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error patching user with ID {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(ApiResponse.error("Error updating user: " + e.getMessage()));
+        }
+    }
+
     /**
      * Delete user
      */
     @DeleteMapping("/{id}")
+    @PreAuthorize("hasPermission(null, 'users:delete')")
     public ResponseEntity<ApiResponse<String>> deleteUser(@PathVariable Long id) {
         try {
             log.info("Deleting user with ID: {}", id);
@@ -170,6 +275,7 @@ public class UserRestController {
             
             if (user.isPresent()) {
                 userService.deleteUser(id);
+                auditLog.record("DELETE", "USER", id, userMapper.toDto(user.get()), null);
                 log.info("Successfully deleted user with ID: {}", id);
                 return ResponseEntity.ok(ApiResponse.success("User deleted successfully", 
                         "User with ID " + id + " has been deleted"));
@@ -192,12 +298,11 @@ public class UserRestController {
     public ResponseEntity<ApiResponse<UserDto>> getCurrentUser(@AuthenticationPrincipal UserDetails loggedInUser) {
         try {
             log.info("Fetching current user data");
-            Optional<User> user = userService.findByEmail(loggedInUser.getUsername());
+            Optional<UserDto> user = userService.findCurrentUser(loggedInUser.getUsername());
             
             if (user.isPresent()) {
-                UserDto userDto = convertToDto(user.get());
                 log.info("Successfully retrieved current user data");
-                return ResponseEntity.ok(ApiResponse.success("Current user data retrieved successfully", userDto));
+                return ResponseEntity.ok(ApiResponse.success("Current user data retrieved successfully", user.get()));
             } else {
                 log.warn("Current user not found");
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -231,6 +336,7 @@ public class UserRestController {
      * Enable user
      */
     @PutMapping("/{id}/enable")
+    @PreAuthorize("hasPermission(null, 'users:disable')")
     public ResponseEntity<ApiResponse<UserDto>> enableUser(@PathVariable Long id) {
         try {
             log.info("Enabling user with ID: {}", id);
@@ -238,10 +344,12 @@ public class UserRestController {
             
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
+                UserDto before = userMapper.toDto(user);
                 user.setActive(true);
                 userService.saveUser(user);
                 
-                UserDto userDto = convertToDto(user);
+                UserDto userDto = userMapper.toDto(user);
+                auditLog.record("ENABLE", "USER", id, before, userDto);
                 log.info("Successfully enabled user with ID: {}", id);
                 return ResponseEntity.ok(ApiResponse.success("User enabled successfully", userDto));
             } else {
@@ -260,6 +368,7 @@ public class UserRestController {
      * Disable user
      */
     @PutMapping("/{id}/disable")
+    @PreAuthorize("hasPermission(null, 'users:disable')")
     public ResponseEntity<ApiResponse<UserDto>> disableUser(@PathVariable Long id) {
         try {
             log.info("Disabling user with ID: {}", id);
@@ -267,10 +376,12 @@ public class UserRestController {
             
             if (userOpt.isPresent()) {
                 User user = userOpt.get();
+                UserDto before = userMapper.toDto(user);
                 user.setActive(false);
                 userService.saveUser(user);
                 
-                UserDto userDto = convertToDto(user);
+                UserDto userDto = userMapper.toDto(user);
+                auditLog.record("DISABLE", "USER", id, before, userDto);
                 log.info("Successfully disabled user with ID: {}", id);
                 return ResponseEntity.ok(ApiResponse.success("User disabled successfully", userDto));
             } else {
@@ -285,7 +396,6 @@ public class UserRestController {
         }
     }
 
-
     /**
      * Handle validation errors
      */
@@ -303,55 +413,4 @@ public class UserRestController {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(ApiResponse.error("Validation failed", errors));
     }
-
-    /**
-     * Convert User entity to UserDto
-     */
-    private UserDto convertToDto(User user) {
-        return UserDto.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .firstName(user.getFirstName())
-                .lastName(user.getLastName())
-                .age(user.getAge())
-                .email(user.getEmail())
-                .photo(user.getPhoto())
-                .photoContentType(user.getPhotoContentType())
-                .roles(user.getRoles().stream()
-                        .map(Role::getName)
-                        .collect(Collectors.toSet()))
-                .createdAt(user.getCreatedAt())
-                .updatedAt(user.getUpdatedAt())
-                .isActive(user.isActive())
-                .build();
-    }
-
-    /**
-     * Convert UserDto to User entity
-     */
-    private User convertToEntity(UserDto dto) {
-        User user = User.builder()
-                .firstName(dto.getFirstName())
-                .lastName(dto.getLastName())
-                .age(dto.getAge())
-                .email(dto.getEmail())
-                .username(dto.getEmail()) // Using email as username
-                .password(passwordEncoder.encode(dto.getPassword()))
-                .isActive(true)
-                .build();
-        
-        // Set roles if provided
-        if (dto.getRoles() != null && !dto.getRoles().isEmpty()) {
-            Set<Role> roles = dto.getRoles().stream()
-                    .map(roleName -> {
-                        Role role = new Role();
-                        role.setName(roleName);
-                        return role;
-                    })
-                    .collect(Collectors.toSet());
-            user.setRoles(roles);
-        }
-        
-        return user;
-    }
-} 
\ No newline at end of file
+}
\ No newline at end of file
@@ -1,20 +1,40 @@
 package habsida.spring.boot_security.demo.dto;
 
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.model.Permission;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
 import habsida.spring.boot_security.demo.repository.RoleRepository;
 import habsida.spring.boot_security.demo.repository.UserRepository;
+import habsida.spring.boot_security.demo.service.PermissionService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+/**
+ * Seeds the default roles and the admin/user accounts.
+ *
+ * {@code app.seed.mode}: EAGER seeds before the application reports ready, DEFERRED hands
+ * the work to the task executor so it stays off the startup path, SKIP does nothing.
+ */
+@Slf4j
 @Component
 public class DataInitializer implements CommandLineRunner {
 
+    public enum SeedMode { EAGER, DEFERRED, SKIP }
+
+    private static final List<String> SEED_EMAILS = Arrays.asList("admin@gmail.com", "user@gmail.com");
+
      @Autowired
     private  UserRepository userRepository;
 
@@ -24,13 +44,47 @@ public class DataInitializer implements CommandLineRunner {
      @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private TaskExecutor taskExecutor;
+
+    @Autowired
+    private PermissionService permissionService;
+
+    @Value("${app.seed.mode:EAGER}")
+    private SeedMode seedMode;
+
     @Override
     public void run(String... args) throws Exception {
+        if (seedMode == SeedMode.SKIP) {
+            return;
+        }
+        if (seedMode == SeedMode.DEFERRED) {
+            taskExecutor.execute(() -> {
+                try {
+                    TenantContext.runAs(TenantContext.DEFAULT_TENANT, this::seed);
+                } catch (Exception e) {
+                    log.error("Deferred seeding failed: {}", e.getMessage());
+                }
+            });
+            return;
+        }
+        // Seed data belongs to the default tenant
+        TenantContext.runAs(TenantContext.DEFAULT_TENANT, this::seed);
+    }
+
+    private void seed() {
+        // Warm restarts: one count query instead of role/user lookups and BCrypt encodes
+        if (userRepository.countByEmailIn(SEED_EMAILS) == SEED_EMAILS.size()) {
+            return;
+        }
+
         // Create roles if they don't exist
         Role adminRole = roleRepository.findByName("ADMIN")
                 .orElseGet(() -> {
                     Role role = new Role();
                     role.setName("ADMIN");
+                    role.setPermissions(EnumSet.allOf(Permission.class));
+                    role.setBitIndex(roleRepository.nextFreeBitIndex());
                     return roleRepository.save(role);
                 });
 
@@ -38,6 +92,7 @@ public class DataInitializer implements CommandLineRunner {
                 .orElseGet(() -> {
                     Role role = new Role();
                     role.setName("USER");
+                    role.setBitIndex(roleRepository.nextFreeBitIndex());
                     return roleRepository.save(role);
                 });
 
@@ -77,5 +132,6 @@ public class DataInitializer implements CommandLineRunner {
 
             userRepository.save(user);
         }
+        permissionService.invalidate();
     }
 }
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Data
 @NoArgsConstructor
@@ -15,6 +16,8 @@ public class RoleDto {
     private Long id;
     private String name;
     private String description;
+    private Set<String> permissions;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    private Long version;
 } 
\ No newline at end of file
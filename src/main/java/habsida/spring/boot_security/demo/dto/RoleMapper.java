@@ -0,0 +1,72 @@
+package habsida.spring.boot_security.demo.dto;
+
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.configs.RequestProfile;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.BeforeMapping;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.NullValueCheckStrategy;
+import org.mapstruct.ReportingPolicy;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Role entity to and from {@link RoleDto}, generated at compile time.
+ */
+@Mapper(componentModel = "spring",
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        nullValueCheckStrategy = NullValueCheckStrategy.ALWAYS,
+        builder = @Builder(disableBuilder = true))
+public interface RoleMapper {
+
+    RoleDto toDto(Role role);
+
+    /**
+     * A new role from a create request: name and permissions only.
+     *
+     * @throws IllegalArgumentException for an unknown permission code
+     */
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "name")
+    @Mapping(target = "permissions")
+    Role toEntity(RoleDto dto);
+
+    @BeforeMapping
+    default void mappingStarted() {
+        RequestProfile.begin(RequestProfile.Phase.MAPPING);
+    }
+
+    @AfterMapping
+    default void mappingFinished() {
+        RequestProfile.end(RequestProfile.Phase.MAPPING);
+    }
+
+    // Sorted, so the codes read the same in responses and audit diffs
+    default Set<String> permissionCodes(Set<Permission> permissions) {
+        if (permissions == null) {
+            return null;
+        }
+        Set<String> codes = new TreeSet<>();
+        for (Permission permission : permissions) {
+            codes.add(permission.getCode());
+        }
+        return codes;
+    }
+
+    default Set<Permission> permissions(Set<String> codes) {
+        if (codes == null) {
+            return null;
+        }
+        Set<Permission> permissions = EnumSet.noneOf(Permission.class);
+        for (String code : codes) {
+            permissions.add(Permission.fromCode(code));
+        }
+        return permissions;
+    }
+}
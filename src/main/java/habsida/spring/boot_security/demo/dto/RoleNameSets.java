@@ -0,0 +1,80 @@
+package habsida.spring.boot_security.demo.dto;
+
+import habsida.spring.boot_security.demo.model.Role;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared, unmodifiable role-name sets for user DTOs.
+ *
+ * Nearly every user holds one of a handful of role combinations, so a list of users maps onto a
+ * few sets instead of one new set per user. Sets are found by tenant and authority mask, and
+ * checked against the roles' current names so a renamed role gets a fresh set.
+ */
+final class RoleNameSets {
+
+    // Role combinations kept per tenant; rarer ones beyond that are built per call
+    private static final int MAX_SETS_PER_TENANT = 256;
+
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<Long, Set<String>>> BY_TENANT =
+            new ConcurrentHashMap<>();
+
+    private RoleNameSets() {
+    }
+
+    static Set<String> of(Set<Role> roles) {
+        if (roles == null) {
+            return null;
+        }
+        if (roles.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String tenant = null;
+        long mask = 0L;
+        for (Role role : roles) {
+            // Not loaded from the database (no bit or tenant yet), or roles of several tenants
+            if (role.getBitIndex() == null || role.getTenantId() == null
+                    || (tenant != null && !tenant.equals(role.getTenantId()))) {
+                return names(roles);
+            }
+            tenant = role.getTenantId();
+            mask |= role.getMask();
+        }
+        ConcurrentHashMap<Long, Set<String>> sets = BY_TENANT.get(tenant);
+        if (sets == null) {
+            sets = BY_TENANT.computeIfAbsent(tenant, key -> new ConcurrentHashMap<>());
+        }
+        Set<String> cached = sets.get(mask);
+        if (cached != null && matches(cached, roles)) {
+            return cached;
+        }
+        Set<String> names = names(roles);
+        if (cached != null || sets.size() < MAX_SETS_PER_TENANT) {
+            sets.put(mask, names);
+        }
+        return names;
+    }
+
+    private static boolean matches(Set<String> names, Set<Role> roles) {
+        if (names.size() != roles.size()) {
+            return false;
+        }
+        for (Role role : roles) {
+            if (!names.contains(role.getName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<String> names(Set<Role> roles) {
+        Set<String> names = new HashSet<>(roles.size() * 2);
+        for (Role role : roles) {
+            names.add(role.getName());
+        }
+        return Collections.unmodifiableSet(names);
+    }
+}
@@ -1,5 +1,6 @@
 package habsida.spring.boot_security.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
 import javax.validation.constraints.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -7,13 +8,29 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Set;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@JsonFilter(UserDto.FIELDS_FILTER)
 public class UserDto {
+
+    /**
+     * Jackson filter id used to serialize only the fields requested with {@code ?fields=}.
+     */
+    public static final String FIELDS_FILTER = "userFields";
+
+    /**
+     * Properties a {@code ?fields=} list may name; the password is never written out.
+     */
+    public static final Set<String> FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "id", "username", "firstName", "lastName", "age", "email", "photo", "photoContentType", "roles",
+            "createdAt", "updatedAt", "active", "lastLoginAt", "loginCount", "version")));
     
     private Long id;
     
@@ -50,4 +67,10 @@ public class UserDto {
     private LocalDateTime updatedAt;
     
     private boolean isActive = true;
+
+    private LocalDateTime lastLoginAt;
+
+    private long loginCount;
+
+    private Long version;
 } 
\ No newline at end of file
@@ -0,0 +1,78 @@
+package habsida.spring.boot_security.demo.dto;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.configs.RequestProfile;
+import org.mapstruct.AfterMapping;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.BeforeMapping;
+import org.mapstruct.Builder;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.NullValueCheckStrategy;
+import org.mapstruct.ReportingPolicy;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * User entity to and from {@link UserDto}, generated at compile time. A DTO property without a
+ * source fails the build, so the mapping cannot silently fall behind the entity.
+ */
+@Mapper(componentModel = "spring",
+        unmappedTargetPolicy = ReportingPolicy.ERROR,
+        nullValueCheckStrategy = NullValueCheckStrategy.ALWAYS,
+        // Entities are built with their constructor so field defaults (roles, isActive) apply
+        builder = @Builder(disableBuilder = true))
+public interface UserMapper {
+
+    /**
+     * The photo array is shared with the entity, not copied, and the role names are a shared
+     * read-only set; neither may be modified. The password is never exposed.
+     */
+    @Mapping(target = "password", ignore = true)
+    // An expression, or MapStruct would copy the array
+    @Mapping(target = "photo", expression = "java(user.getPhoto())")
+    UserDto toDto(User user);
+
+    /**
+     * A new, active user from a create request. Roles are carried by name only, to be resolved
+     * by the service; the password is left for the caller to encode.
+     */
+    @BeanMapping(ignoreByDefault = true)
+    @Mapping(target = "firstName")
+    @Mapping(target = "lastName")
+    @Mapping(target = "age")
+    @Mapping(target = "email")
+    @Mapping(target = "username", source = "email")
+    @Mapping(target = "roles")
+    User toEntity(UserDto dto);
+
+    // Mapping time of the current request, for the slow-request breakdown
+    @BeforeMapping
+    default void mappingStarted() {
+        RequestProfile.begin(RequestProfile.Phase.MAPPING);
+    }
+
+    @AfterMapping
+    default void mappingFinished() {
+        RequestProfile.end(RequestProfile.Phase.MAPPING);
+    }
+
+    default Set<String> roleNames(Set<Role> roles) {
+        return RoleNameSets.of(roles);
+    }
+
+    default Set<Role> roleReferences(Set<String> names) {
+        if (names == null) {
+            return null;
+        }
+        Set<Role> roles = new HashSet<>(names.size() * 2);
+        for (String name : names) {
+            Role role = new Role();
+            role.setName(name);
+            roles.add(role);
+        }
+        return roles;
+    }
+}
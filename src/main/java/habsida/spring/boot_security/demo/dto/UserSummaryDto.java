@@ -0,0 +1,60 @@
+package habsida.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compact user representation for list views: no photo, password, username or update timestamp.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonFilter(UserDto.FIELDS_FILTER)
+public class UserSummaryDto {
+
+    private static final Set<String> FIELDS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "id", "firstName", "lastName", "email", "age", "roles", "active", "createdAt", "version")));
+
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private int age;
+    private Set<String> roles;
+    private boolean isActive;
+    private LocalDateTime createdAt;
+    private Long version;
+
+    /**
+     * Constructor used by the JPQL projection; roles are filled in afterwards.
+     */
+    public UserSummaryDto(Long id, String firstName, String lastName, String email, int age,
+                          boolean isActive, LocalDateTime createdAt, Long version) {
+        this(id, firstName, lastName, email, age, null, isActive, createdAt, version);
+    }
+
+    /**
+     * True if every field requested in a {@code ?fields=} list is available on the summary.
+     */
+    public static boolean covers(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return true;
+        }
+        for (String field : fields.split(",")) {
+            if (!FIELDS.contains(field.trim())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
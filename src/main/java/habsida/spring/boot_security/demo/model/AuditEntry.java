@@ -0,0 +1,46 @@
+package habsida.spring.boot_security.demo.model;
+
+import javax.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "audit_log")
+@Getter
+@Setter
+@NoArgsConstructor
+public class AuditEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "tenant_id", nullable = false, length = 64)
+    private String tenantId;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+
+    @Column(length = 100)
+    private String actor;
+
+    @Column(nullable = false, length = 50)
+    private String action;
+
+    @Column(name = "target_type", nullable = false, length = 50)
+    private String targetType;
+
+    @Column(name = "target_id", length = 100)
+    private String targetId;
+
+    @Lob
+    @Column(name = "before_state")
+    private String beforeState;
+
+    @Lob
+    @Column(name = "after_state")
+    private String afterState;
+}
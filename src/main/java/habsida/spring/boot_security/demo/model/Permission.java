@@ -0,0 +1,69 @@
+package habsida.spring.boot_security.demo.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Operation-level permissions granted to roles, referenced by code in
+ * {@code @PreAuthorize("hasPermission(null, 'users:disable')")}. Each permission is one bit
+ * of a long, so there can be at most 64.
+ *
+ * Platform permissions act on state shared by every tenant, such as the maintenance jobs. They
+ * are only honoured for users of the default tenant, whatever another tenant's roles grant.
+ */
+public enum Permission {
+
+    USERS_READ("users:read"),
+    USERS_CREATE("users:create"),
+    USERS_UPDATE("users:update"),
+    USERS_DELETE("users:delete"),
+    USERS_DISABLE("users:disable"),
+    ROLES_WRITE("roles:write"),
+    PHOTOS_READ_ANY("photos:read:any"),
+    AUDIT_READ("audit:read"),
+    DIAGNOSTICS_READ("diagnostics:read"),
+    JOBS_RUN("jobs:run", true);
+
+    private static final Map<String, Permission> BY_CODE = new HashMap<>();
+
+    static {
+        for (Permission permission : values()) {
+            BY_CODE.put(permission.code, permission);
+        }
+    }
+
+    private final String code;
+    private final boolean platform;
+
+    Permission(String code) {
+        this(code, false);
+    }
+
+    Permission(String code, boolean platform) {
+        this.code = code;
+        this.platform = platform;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public boolean isPlatform() {
+        return platform;
+    }
+
+    public long getMask() {
+        return 1L << ordinal();
+    }
+
+    /**
+     * @throws IllegalArgumentException for an unknown code
+     */
+    public static Permission fromCode(String code) {
+        Permission permission = BY_CODE.get(code);
+        if (permission == null) {
+            throw new IllegalArgumentException("Unknown permission: " + code);
+        }
+        return permission;
+    }
+}
@@ -0,0 +1,21 @@
+package habsida.spring.boot_security.demo.model;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Stores a {@link Permission} as its code, so the table reads like the annotations.
+ */
+@Converter
+public class PermissionConverter implements AttributeConverter<Permission, String> {
+
+    @Override
+    public String convertToDatabaseColumn(Permission permission) {
+        return permission == null ? null : permission.getCode();
+    }
+
+    @Override
+    public Permission convertToEntityAttribute(String code) {
+        return code == null ? null : Permission.fromCode(code);
+    }
+}
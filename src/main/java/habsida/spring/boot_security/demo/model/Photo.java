@@ -0,0 +1,39 @@
+package habsida.spring.boot_security.demo.model;
+
+import javax.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Photo content stored once per SHA-256 digest. Rows are written and reference-counted
+ * through PhotoRepository's JDBC operations; the entity is only read.
+ */
+@Entity
+@Table(name = "photos")
+@Getter
+@Setter
+@NoArgsConstructor
+public class Photo {
+
+    @Id
+    @Column(length = 64)
+    private String digest;
+
+    @Column(name = "content", nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] content;
+
+    @Column(name = "content_type", nullable = false, length = 50)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -3,11 +3,14 @@ package habsida.spring.boot_security.demo.model;
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import org.hibernate.annotations.Filter;
 import org.springframework.security.core.GrantedAuthority;
 
 import java.time.LocalDateTime;
@@ -16,7 +19,10 @@ import java.util.Set;
 import java.util.Objects;
 
 @Entity
-@Table(name = "roles")
+@Table(name = "roles", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_roles_tenant_name", columnNames = {"tenant_id", "name"}),
+        @UniqueConstraint(name = "uk_roles_tenant_bit_index", columnNames = {"tenant_id", "bit_index"})})
+@Filter(name = User.TENANT_FILTER, condition = User.TENANT_CONDITION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -28,7 +34,7 @@ public class Role implements GrantedAuthority {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(unique = true, nullable = false, length = 50)
+    @Column(nullable = false, length = 50)
     @NotBlank(message = "Role name is required")
     @Size(min = 2, max = 50, message = "Role name must be between 2 and 50 characters")
     private String name;
@@ -36,17 +42,44 @@ public class Role implements GrantedAuthority {
     @Column(length = 255)
     private String description;
 
+    @Column(name = "tenant_id", nullable = false, updatable = false, length = 64)
+    private String tenantId;
+
+    // Dense ordinal within the tenant, 0..63, giving the role its bit in User.getAuthorityMask()
+    @Column(name = "bit_index", nullable = false)
+    private Integer bitIndex;
+
+    // getAuthority() is called for every role on every authorization check
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String authority;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    @ElementCollection(fetch = FetchType.LAZY)
+    @CollectionTable(name = "role_permissions", joinColumns = @JoinColumn(name = "role_id"))
+    @Column(name = "permission", length = 64, nullable = false)
+    @Convert(converter = PermissionConverter.class)
+    @Builder.Default
+    private Set<Permission> permissions = new HashSet<>();
+
     @ManyToMany(mappedBy = "roles", fetch = FetchType.LAZY)
     private Set<User> users = new HashSet<>();
 
     @PrePersist
     protected void onCreate() {
+        if (tenantId == null) {
+            tenantId = TenantContext.getOrDefault();
+        }
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
     }
@@ -60,6 +93,18 @@ public class Role implements GrantedAuthority {
         return name;
     }
 
+    public void setName(String name) {
+        this.name = name;
+        this.authority = null;
+    }
+
+    /**
+     * This role's bit, for masks compared against {@link User#getAuthorityMask()}.
+     */
+    public long getMask() {
+        return 1L << bitIndex;
+    }
+
     // A cleaner method to just get the role keyword
     public String getShortName() {
         return name.replace("ROLE_", "");
@@ -67,7 +112,12 @@ public class Role implements GrantedAuthority {
 
     @Override
     public String getAuthority() {
-        return name.startsWith("ROLE_") ? name : "ROLE_" + name;
+        String cached = authority;
+        if (cached == null) {
+            cached = name.startsWith("ROLE_") ? name : "ROLE_" + name;
+            authority = cached;
+        }
+        return cached;
     }
 
        public void addUser(User user) {
@@ -75,19 +125,14 @@ public class Role implements GrantedAuthority {
             this.users = new HashSet<>();
         }
         this.users.add(user);
-        if (user.getRoles() == null) {
-            user.setRoles(new HashSet<>());
-        }
-        user.getRoles().add(this);
+        user.addRole(this);
     }
 
     public void removeUser(User user) {
         if (this.users != null) {
             this.users.remove(user);
         }
-        if (user.getRoles() != null) {
-            user.getRoles().remove(this);
-        }
+        user.removeRole(this);
     }
 
     @Override
@@ -2,12 +2,19 @@ package habsida.spring.boot_security.demo.model;
 
 import javax.persistence.*;
 import javax.validation.constraints.*;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import org.springframework.security.core.userdetails.UserDetails;
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Filter;
+import org.hibernate.annotations.FilterDef;
+import org.hibernate.annotations.ParamDef;
+import org.hibernate.annotations.Where;
 import org.springframework.security.core.GrantedAuthority;
 
 import java.time.LocalDateTime;
@@ -15,13 +22,23 @@ import java.util.*;
 
 @Entity
 @Table(name = "users")
+@FilterDef(name = User.TENANT_FILTER, parameters = @ParamDef(name = User.TENANT_PARAMETER, type = "string"))
+@Filter(name = User.TENANT_FILTER, condition = User.TENANT_CONDITION)
+// Soft-deleted rows wait in the table for the archival job, see UserArchiver
+@Where(clause = "deleted_at IS NULL")
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class User implements UserDetails {
-    
+
+    // Enabled on every entity manager opened inside a tenant, see TenantConfig; Role uses it too
+    public static final String TENANT_FILTER = "tenant";
+    public static final String TENANT_PARAMETER = "tenantId";
+    public static final String TENANT_CONDITION = "tenant_id = :" + TENANT_PARAMETER;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -56,8 +73,13 @@ public class User implements UserDetails {
     @Size(min = 6, message = "Password must be at least 6 characters")
     private String password;
 
-    @Column(name = "photo", columnDefinition = "LONGBLOB")
-    private byte[] photo;
+    // Shared, reference-counted content; the pointer is only changed through UserRepository.updatePhotoDigest
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "photo_digest", insertable = false, updatable = false)
+    private Photo storedPhoto;
+
+    @Column(name = "tenant_id", nullable = false, updatable = false, length = 64)
+    private String tenantId;
 
     @Column(name = "photo_content_type")
     private String photoContentType;
@@ -71,6 +93,21 @@ public class User implements UserDetails {
     @Column(name = "is_active")
     private boolean isActive = true;
 
+    // Maintained by LoginActivityTracker with its own batched UPDATE; at most one flush interval behind
+    @Column(name = "last_login_at", insertable = false, updatable = false)
+    private LocalDateTime lastLoginAt;
+
+    @Column(name = "login_count", insertable = false, updatable = false)
+    private long loginCount;
+
+    // Set only by UserRepository.markDeleted; marked rows are invisible and wait for the archival job
+    @Column(name = "deleted_at", insertable = false, updatable = false)
+    private LocalDateTime deletedAt;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @ManyToMany(fetch = FetchType.EAGER, cascade = {CascadeType.MERGE})
     @JoinTable(
             name = "users_roles",
@@ -79,8 +116,22 @@ public class User implements UserDetails {
     )
     private Set<Role> roles = new HashSet<>();
 
+    // OR of the roles' masks, computed on first use after the roles were loaded or replaced
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long authorityMask;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean authorityMaskValid;
+
     @PrePersist
     protected void onCreate() {
+        if (tenantId == null) {
+            tenantId = TenantContext.getOrDefault();
+        }
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
     }
@@ -90,6 +141,17 @@ public class User implements UserDetails {
         updatedAt = LocalDateTime.now();
     }
 
+    public boolean hasPhoto() {
+        return storedPhoto != null;
+    }
+
+    /**
+     * Photo bytes, loaded from the shared photos table on first access.
+     */
+    public byte[] getPhoto() {
+        return storedPhoto != null ? storedPhoto.getContent() : null;
+    }
+
     // UserDetails methods
     @Override 
     public Collection<? extends GrantedAuthority> getAuthorities() {
@@ -129,12 +191,56 @@ public class User implements UserDetails {
         return isActive; 
     }
 
+    public void setRoles(Set<Role> roles) {
+        this.roles = roles;
+        this.authorityMaskValid = false;
+    }
+
+    public void addRole(Role role) {
+        if (roles == null) {
+            roles = new HashSet<>();
+        }
+        roles.add(role);
+        authorityMaskValid = false;
+    }
+
+    public void removeRole(Role role) {
+        if (roles != null) {
+            roles.remove(role);
+        }
+        authorityMaskValid = false;
+    }
+
+    /**
+     * One bit per role, see {@link Role#getMask()}. Changes made directly on the set returned
+     * by {@link #getRoles()} are not seen; use {@link #setRoles}, {@link #addRole} or {@link #removeRole}.
+     */
+    public long getAuthorityMask() {
+        if (!authorityMaskValid) {
+            long mask = 0L;
+            if (roles != null) {
+                for (Role role : roles) {
+                    if (role.getBitIndex() != null) {
+                        mask |= role.getMask();
+                    }
+                }
+            }
+            authorityMask = mask;
+            authorityMaskValid = true;
+        }
+        return authorityMask;
+    }
+
     public boolean hasRole(String roleName) {
-        if (roles == null || roles.isEmpty()) {
+        if (roles == null) {
             return false;
         }
-        return roles.stream()
-                .anyMatch(role -> role.getName().equals(roleName));
+        for (Role role : roles) {
+            if (role.getName().equals(roleName)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
@@ -0,0 +1,15 @@
+package habsida.spring.boot_security.demo.repository;
+
+import habsida.spring.boot_security.demo.model.AuditEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface AuditEntryRepository extends JpaRepository<AuditEntry, Long> {
+
+    Page<AuditEntry> findByTenantIdOrderByIdDesc(String tenantId, Pageable pageable);
+
+    Page<AuditEntry> findByTenantIdAndActorOrderByIdDesc(String tenantId, String actor, Pageable pageable);
+}
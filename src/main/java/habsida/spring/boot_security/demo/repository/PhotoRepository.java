@@ -0,0 +1,9 @@
+package habsida.spring.boot_security.demo.repository;
+
+import habsida.spring.boot_security.demo.model.Photo;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PhotoRepository extends JpaRepository<Photo, String>, PhotoRepositoryCustom {
+}
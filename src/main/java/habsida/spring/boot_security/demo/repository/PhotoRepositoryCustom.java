@@ -0,0 +1,28 @@
+package habsida.spring.boot_security.demo.repository;
+
+import java.io.InputStream;
+
+/**
+ * Reference-counted writes to the shared photos table.
+ */
+public interface PhotoRepositoryCustom {
+
+    /**
+     * Add a reference to an existing photo.
+     *
+     * @return false if no photo with that digest is stored
+     */
+    boolean addReference(String digest);
+
+    /**
+     * Store new content with one reference, streaming it through JDBC.
+     *
+     * @return false if another transaction stored the same digest first
+     */
+    boolean insert(String digest, InputStream content, String contentType, long sizeBytes);
+
+    /**
+     * Drop a reference and delete the content once nothing refers to it.
+     */
+    void releaseReference(String digest);
+}
@@ -0,0 +1,56 @@
+package habsida.spring.boot_security.demo.repository;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.InputStream;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+public class PhotoRepositoryImpl implements PhotoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public boolean addReference(String digest) {
+        return entityManager.createNativeQuery("UPDATE photos SET ref_count = ref_count + 1 WHERE digest = ?1")
+                .setParameter(1, digest)
+                .executeUpdate() == 1;
+    }
+
+    @Override
+    public boolean insert(String digest, InputStream content, String contentType, long sizeBytes) {
+        // Plain JDBC so the driver reads the stream itself; the photo never becomes a byte[] here
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO photos "
+                    + "(digest, content, content_type, size_bytes, ref_count, created_at) VALUES (?, ?, ?, ?, 1, ?)")) {
+                statement.setString(1, digest);
+                statement.setBinaryStream(2, content, sizeBytes);
+                statement.setString(3, contentType);
+                statement.setLong(4, sizeBytes);
+                statement.setTimestamp(5, Timestamp.valueOf(LocalDateTime.now()));
+                return statement.executeUpdate() == 1;
+            } catch (SQLException e) {
+                // Lost a race on the primary key: MySQL and H2 only roll back the failed statement
+                if (e.getSQLState() != null && e.getSQLState().startsWith("23")) {
+                    return false;
+                }
+                throw e;
+            }
+        });
+    }
+
+    @Override
+    public void releaseReference(String digest) {
+        entityManager.createNativeQuery("UPDATE photos SET ref_count = ref_count - 1 WHERE digest = ?1")
+                .setParameter(1, digest)
+                .executeUpdate();
+        entityManager.createNativeQuery("DELETE FROM photos WHERE digest = ?1 AND ref_count <= 0")
+                .setParameter(1, digest)
+                .executeUpdate();
+    }
+}
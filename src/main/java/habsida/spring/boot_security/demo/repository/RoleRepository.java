@@ -2,11 +2,43 @@ package habsida.spring.boot_security.demo.repository;
 
 import habsida.spring.boot_security.demo.model.Role;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface RoleRepository extends JpaRepository<Role, Long> {
 
     Optional<Role> findByName(String name);
 
+    // Unlike findById this is a query, so the tenant filter applies
+    @Query("SELECT r FROM Role r WHERE r.id = :id")
+    Optional<Role> findVisibleById(@Param("id") Long id);
+
+    @Query("SELECT DISTINCT r FROM Role r LEFT JOIN FETCH r.permissions")
+    List<Role> findAllWithPermissions();
+
+    @Query("SELECT r.bitIndex FROM Role r ORDER BY r.bitIndex")
+    List<Integer> findAllBitIndexes();
+
+    /**
+     * Lowest bit index not used by any role; the unique constraint catches concurrent creators.
+     *
+     * @throws IllegalStateException if all 64 bits are taken
+     */
+    default int nextFreeBitIndex() {
+        int candidate = 0;
+        for (Integer used : findAllBitIndexes()) {
+            if (used != candidate) {
+                break;
+            }
+            candidate++;
+        }
+        if (candidate >= Long.SIZE) {
+            throw new IllegalStateException("At most " + Long.SIZE + " roles are supported");
+        }
+        return candidate;
+    }
+
 }
\ No newline at end of file
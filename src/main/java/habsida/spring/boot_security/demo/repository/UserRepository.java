@@ -1,18 +1,25 @@
 package habsida.spring.boot_security.demo.repository;
 
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
 import habsida.spring.boot_security.demo.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     Optional<User> findByEmail(String email);
 
+    // Unlike findById this is a query, so the tenant filter applies
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findVisibleById(@Param("id") Long id);
+
     Optional<User> findByUsername(String username);
 
     boolean existsByUsername(String username);
@@ -21,4 +28,29 @@ public interface UserRepository extends JpaRepository<User, Long> {
     List<User> findAllWithRoles();
 
     boolean existsByEmail(String mail);
+
+    boolean existsByEmailAndIdNot(String email, Long id);
+
+    long countByEmailIn(Collection<String> emails);
+
+    long countByIsActive(boolean isActive);
+
+    // Scalar projection for list views: the photo column is never selected
+    @Query("SELECT new habsida.spring.boot_security.demo.dto.UserSummaryDto("
+            + "u.id, u.firstName, u.lastName, u.email, u.age, u.isActive, u.createdAt, u.version) "
+            + "FROM User u ORDER BY u.id")
+    List<UserSummaryDto> findAllSummaries();
+
+    @Query("SELECT u.id FROM User u WHERE u.email = :email")
+    Optional<Long> findIdByEmail(@Param("email") String email);
+
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query("SELECT u.id, r.name FROM User u JOIN u.roles r")
+    List<Object[]> findAllUserRoleNames();
+
+    // Served from idx_users_roles_role_user without reading the users table
+    @Query("SELECT COUNT(u) FROM User u JOIN u.roles r WHERE r.name = :roleName")
+    long countByRoleName(@Param("roleName") String roleName);
 }
\ No newline at end of file
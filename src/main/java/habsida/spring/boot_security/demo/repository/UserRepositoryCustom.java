@@ -0,0 +1,57 @@
+package habsida.spring.boot_security.demo.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Column-targeted queries and writes that never load the User entity (and so never its photo).
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Update only the given attributes of a user, guarded by its version.
+     * The version is incremented and updatedAt refreshed in the same statement.
+     *
+     * @return number of rows updated: 0 if the user is gone or the version no longer matches
+     */
+    int updateColumns(Long id, Long expectedVersion, Map<String, Object> attributes);
+
+    void replaceRoles(Long userId, Collection<Long> roleIds);
+
+    /**
+     * Role ids as stored, ignoring changes to a loaded user that have not been flushed yet.
+     */
+    List<Long> findStoredRoleIds(Long userId);
+
+    /**
+     * Soft-delete a user of the current tenant: the row, its role links and its photo reference stay
+     * until the archival job moves them, but the user is no longer seen by any entity query.
+     *
+     * @return number of rows updated: 0 if the user is gone or already deleted
+     */
+    int markDeleted(Long id);
+
+    /**
+     * Lock the user's row and return its current photo digest, or null if it has no photo.
+     *
+     * @throws javax.persistence.EntityNotFoundException if there is no user with that email
+     */
+    String lockPhotoDigest(String email);
+
+    /**
+     * Point the user at a stored photo (or none, with a null digest), bumping version and updatedAt.
+     * Reference counts are the caller's business.
+     *
+     * @return number of rows updated
+     */
+    int updatePhotoDigest(String email, String digest, String contentType);
+
+    /**
+     * Cursor over summary rows ordered by user id, one row per (user, role):
+     * id, firstName, lastName, email, age, isActive, createdAt, version, role name (null if none).
+     * Must be consumed and closed inside a transaction.
+     */
+    Stream<Object[]> streamSummaryRows();
+}
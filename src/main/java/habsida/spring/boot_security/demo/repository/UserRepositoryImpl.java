@@ -0,0 +1,119 @@
+package habsida.spring.boot_security.demo.repository;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.model.User;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${app.streaming.fetch-size:500}")
+    private int streamingFetchSize;
+
+    @Override
+    public int updateColumns(Long id, Long expectedVersion, Map<String, Object> attributes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<User> update = cb.createCriteriaUpdate(User.class);
+        Root<User> user = update.from(User.class);
+
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            update.set(attribute.getKey(), attribute.getValue());
+        }
+        // Bulk updates bypass @Version and @PreUpdate, so do their work here
+        update.set(user.<Long>get("version"), cb.sum(user.<Long>get("version"), 1L));
+        update.set("updatedAt", LocalDateTime.now());
+        update.where(cb.equal(user.get("id"), id), cb.equal(user.get("version"), expectedVersion),
+                // Filters and @Where do not apply to bulk updates
+                cb.equal(user.get("tenantId"), TenantContext.getOrDefault()),
+                cb.isNull(user.get("deletedAt")));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    public void replaceRoles(Long userId, Collection<Long> roleIds) {
+        entityManager.createNativeQuery("DELETE FROM users_roles WHERE user_id = ?1")
+                .setParameter(1, userId)
+                .executeUpdate();
+        for (Long roleId : roleIds) {
+            entityManager.createNativeQuery("INSERT INTO users_roles (user_id, role_id) VALUES (?1, ?2)")
+                    .setParameter(1, userId)
+                    .setParameter(2, roleId)
+                    .executeUpdate();
+        }
+    }
+
+    @Override
+    public List<Long> findStoredRoleIds(Long userId) {
+        List<?> rows = entityManager.createNativeQuery("SELECT role_id FROM users_roles WHERE user_id = ?1")
+                .setParameter(1, userId)
+                // Without this the pending role changes would be flushed and read back
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+        List<Long> roleIds = new ArrayList<>(rows.size());
+        for (Object row : rows) {
+            roleIds.add(((Number) row).longValue());
+        }
+        return roleIds;
+    }
+
+    @Override
+    public int markDeleted(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        return entityManager.createNativeQuery("UPDATE users SET deleted_at = ?1, updated_at = ?1, version = version + 1 "
+                        + "WHERE id = ?2 AND tenant_id = ?3 AND deleted_at IS NULL")
+                .setParameter(1, now)
+                .setParameter(2, id)
+                .setParameter(3, TenantContext.getOrDefault())
+                .executeUpdate();
+    }
+
+    @Override
+    public String lockPhotoDigest(String email) {
+        List<?> rows = entityManager.createNativeQuery("SELECT photo_digest FROM users WHERE email = ?1 AND deleted_at IS NULL FOR UPDATE")
+                .setParameter(1, email)
+                .getResultList();
+        if (rows.isEmpty()) {
+            throw new EntityNotFoundException("User not found with email: " + email);
+        }
+        return (String) rows.get(0);
+    }
+
+    @Override
+    public int updatePhotoDigest(String email, String digest, String contentType) {
+        return entityManager.createNativeQuery("UPDATE users SET photo_digest = ?1, photo_content_type = ?2, "
+                        + "updated_at = ?3, version = version + 1 WHERE email = ?4")
+                .setParameter(1, digest)
+                .setParameter(2, contentType)
+                .setParameter(3, LocalDateTime.now())
+                .setParameter(4, email)
+                .executeUpdate();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Stream<Object[]> streamSummaryRows() {
+        return entityManager.createQuery("SELECT u.id, u.firstName, u.lastName, u.email, u.age, u.isActive, "
+                        + "u.createdAt, u.version, r.name FROM User u LEFT JOIN u.roles r ORDER BY u.id")
+                .setHint(QueryHints.HINT_FETCH_SIZE, streamingFetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream();
+    }
+}
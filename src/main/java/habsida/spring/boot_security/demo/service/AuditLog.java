@@ -0,0 +1,229 @@
+package habsida.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.dto.UserDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous audit trail for admin mutations.
+ *
+ * Request threads only capture the event and offer it to a lock-free ring buffer;
+ * a single writer thread serializes the before/after snapshots and inserts them
+ * into {@code audit_log} with JDBC batches. When the buffer is full the configured
+ * overflow policy decides between dropping the event immediately or waiting a
+ * bounded time for space; either way dropped events are counted.
+ */
+@Service
+@Slf4j
+public class AuditLog implements SmartLifecycle {
+
+    public enum OverflowPolicy { DROP, WAIT }
+
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_log (tenant_id, occurred_at, actor, action, target_type, target_id, before_state, after_state) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final AuditRingBuffer<Event> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long waitTimeoutNanos;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public AuditLog(JdbcTemplate jdbcTemplate,
+                    ObjectMapper objectMapper,
+                    @Value("${app.audit.buffer-capacity:8192}") int capacity,
+                    @Value("${app.audit.batch-size:256}") int batchSize,
+                    @Value("${app.audit.flush-interval-ms:200}") long flushIntervalMs,
+                    @Value("${app.audit.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                    @Value("${app.audit.wait-timeout-ms:5}") long waitTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Snapshots never carry the photo blob or a password hash into the audit table
+        this.objectMapper = objectMapper.copy().addMixIn(UserDto.class, UserDtoAuditMixin.class);
+        this.buffer = new AuditRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.overflowPolicy = overflowPolicy;
+        this.waitTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+    }
+
+    /**
+     * Record a mutation performed by the current principal in the current tenant. Never blocks
+     * longer than the configured wait timeout and never touches the database.
+     */
+    public void record(String action, String targetType, Object targetId, Object before, Object after) {
+        Event event = new Event(TenantContext.getOrDefault(), LocalDateTime.now(), currentActor(), action, targetType,
+                targetId == null ? null : targetId.toString(), before, after);
+        if (buffer.offer(event) || (overflowPolicy == OverflowPolicy.WAIT && offerWithin(event))) {
+            published.incrementAndGet();
+            if (buffer.size() >= batchSize) {
+                LockSupport.unpark(writer);
+            }
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("published", published.get());
+        stats.put("written", written.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("pending", buffer.size());
+        stats.put("capacity", buffer.capacity());
+        stats.put("overflowPolicy", overflowPolicy.name());
+        return stats;
+    }
+
+    private boolean offerWithin(Event event) {
+        long deadline = System.nanoTime() + waitTimeoutNanos;
+        LockSupport.unpark(writer);
+        while (System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(50_000);
+            if (buffer.offer(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+
+    private void runWriter() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        while (running) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                continue;
+            }
+            write(batch);
+        }
+        // Flush whatever was published before shutdown
+        while (buffer.drainTo(batch, batchSize) > 0) {
+            write(batch);
+        }
+    }
+
+    private void write(List<Event> batch) {
+        try {
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            for (Event event : batch) {
+                rows.add(new Object[]{
+                        event.tenant,
+                        Timestamp.valueOf(event.occurredAt),
+                        event.actor,
+                        event.action,
+                        event.targetType,
+                        event.targetId,
+                        toJson(event.before),
+                        toJson(event.after)
+                });
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            failed.addAndGet(batch.size());
+            log.error("Failed to write {} audit entries: {}", batch.size(), e.getMessage());
+        } finally {
+            batch.clear();
+        }
+    }
+
+    private String toJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            return String.valueOf(value);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::runWriter, "audit-writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @JsonIgnoreProperties({"photo", "password"})
+    private abstract static class UserDtoAuditMixin {
+    }
+
+    private static final class Event {
+        final String tenant;
+        final LocalDateTime occurredAt;
+        final String actor;
+        final String action;
+        final String targetType;
+        final String targetId;
+        final Object before;
+        final Object after;
+
+        Event(String tenant, LocalDateTime occurredAt, String actor, String action, String targetType,
+              String targetId, Object before, Object after) {
+            this.tenant = tenant;
+            this.occurredAt = occurredAt;
+            this.actor = actor;
+            this.action = action;
+            this.targetType = targetType;
+            this.targetId = targetId;
+            this.before = before;
+            this.after = after;
+        }
+    }
+}
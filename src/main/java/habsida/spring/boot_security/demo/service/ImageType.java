@@ -0,0 +1,65 @@
+package habsida.spring.boot_security.demo.service;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Image formats accepted for profile photos, recognised by their leading magic bytes
+ * rather than by the client-supplied content type.
+ */
+public enum ImageType {
+
+    JPEG("image/jpeg"),
+    PNG("image/png"),
+    GIF("image/gif"),
+    WEBP("image/webp");
+
+    /** Bytes needed to tell all supported formats apart. */
+    public static final int HEADER_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String mediaType;
+
+    ImageType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * The format whose signature starts the header, or null if none matches.
+     */
+    public static ImageType detect(byte[] header, int length) {
+        if (length >= 3 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && (header[2] & 0xFF) == 0xFF) {
+            return JPEG;
+        }
+        if (startsWith(header, length, PNG_SIGNATURE, 0)) {
+            return PNG;
+        }
+        if (startsWith(header, length, ascii("GIF87a"), 0) || startsWith(header, length, ascii("GIF89a"), 0)) {
+            return GIF;
+        }
+        if (startsWith(header, length, ascii("RIFF"), 0) && startsWith(header, length, ascii("WEBP"), 8)) {
+            return WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, byte[] signature, int offset) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[offset + i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,311 @@
+package habsida.spring.boot_security.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs every {@link MaintenanceJob} bean on a fixed delay.
+ *
+ * A single scheduler thread only fires the triggers; each job runs on its own small pool of
+ * low-priority daemon threads, and a job already running on all of its threads skips the tick
+ * instead of queueing. Runs can also be triggered, and jobs paused, through
+ * {@code /api/admin/jobs}. The last history-size runs of each job are kept with their durations.
+ *
+ * The pools are created here rather than as beans, so the application's task executor is untouched.
+ */
+@Service
+@Slf4j
+public class JobScheduler implements SmartLifecycle {
+
+    public enum Trigger { SCHEDULED, MANUAL }
+
+    public enum Outcome { SUCCEEDED, FAILED }
+
+    private final Map<String, Job> jobs = new TreeMap<>();
+    private final boolean enabled;
+    private final int historySize;
+    private final AtomicLong runIds = new AtomicLong();
+
+    private volatile ThreadPoolTaskScheduler scheduler;
+
+    public JobScheduler(List<MaintenanceJob> definitions, Environment environment) {
+        Binder binder = Binder.get(environment);
+        this.enabled = binder.bind("app.jobs.enabled", Boolean.class).orElse(true);
+        this.historySize = binder.bind("app.jobs.history-size", Integer.class).orElse(20);
+        for (MaintenanceJob definition : definitions) {
+            String prefix = "app.jobs." + definition.getName();
+            jobs.put(definition.getName(), new Job(definition,
+                    binder.bind(prefix + ".enabled", Boolean.class).orElse(true),
+                    binder.bind(prefix + ".interval", Duration.class).orElse(definition.getDefaultInterval()),
+                    binder.bind(prefix + ".threads", Integer.class).orElse(1)));
+        }
+    }
+
+    /**
+     * Start a run now, unless the job is already running on all of its threads.
+     * Paused jobs can still be run by hand.
+     *
+     * @return the run id, or null if the job is at its concurrency limit
+     * @throws IllegalArgumentException for an unknown job
+     */
+    public Long trigger(String name) {
+        return submit(job(name), Trigger.MANUAL);
+    }
+
+    public void pause(String name) {
+        job(name).paused = true;
+    }
+
+    public void resume(String name) {
+        job(name).paused = false;
+    }
+
+    public List<Map<String, Object>> list() {
+        List<Map<String, Object>> statuses = new ArrayList<>();
+        for (Job job : jobs.values()) {
+            statuses.add(job.status());
+        }
+        return statuses;
+    }
+
+    /**
+     * Status of one job with its recent runs, newest first.
+     *
+     * @throws IllegalArgumentException for an unknown job
+     */
+    public Map<String, Object> describe(String name) {
+        Job job = job(name);
+        Map<String, Object> status = job.status();
+        status.put("history", job.history());
+        return status;
+    }
+
+    private Job job(String name) {
+        Job job = jobs.get(name);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown job: " + name);
+        }
+        return job;
+    }
+
+    private Long submit(final Job job, final Trigger trigger) {
+        ThreadPoolTaskExecutor executor = job.executor;
+        if (executor == null || !job.permits.tryAcquire()) {
+            job.skipped.incrementAndGet();
+            return null;
+        }
+        final long id = runIds.incrementAndGet();
+        try {
+            executor.execute(() -> execute(job, id, trigger));
+        } catch (TaskRejectedException e) {
+            // Only while shutting down
+            job.permits.release();
+            job.skipped.incrementAndGet();
+            return null;
+        }
+        return id;
+    }
+
+    private void execute(Job job, long id, Trigger trigger) {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.SUCCEEDED;
+        String summary;
+        try {
+            try {
+                summary = job.definition.run();
+            } catch (Exception e) {
+                outcome = Outcome.FAILED;
+                summary = e.getClass().getSimpleName() + ": " + e.getMessage();
+                log.warn("Job {} run {} failed: {}", job.definition.getName(), id, summary);
+            }
+            job.record(new Run(id, trigger, outcome, startedAt,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), summary), historySize);
+        } finally {
+            job.permits.release();
+        }
+    }
+
+    @Override
+    public void start() {
+        ThreadPoolTaskScheduler triggers = new ThreadPoolTaskScheduler();
+        triggers.setPoolSize(1);
+        triggers.setThreadNamePrefix("job-trigger-");
+        triggers.setDaemon(true);
+        triggers.initialize();
+        for (final Job job : jobs.values()) {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(job.threads);
+            executor.setMaxPoolSize(job.threads);
+            // The permits bound the work; the queue only covers a thread that has not yet gone back to the pool
+            executor.setQueueCapacity(job.threads);
+            executor.setThreadNamePrefix("job-" + job.definition.getName() + "-");
+            executor.setDaemon(true);
+            // Below request threads when the CPU is contended
+            executor.setThreadPriority(Thread.MIN_PRIORITY);
+            executor.initialize();
+            job.executor = executor;
+            if (enabled && job.enabled) {
+                job.schedule = triggers.scheduleWithFixedDelay(() -> {
+                    if (!job.paused) {
+                        submit(job, Trigger.SCHEDULED);
+                    }
+                }, Instant.now().plus(job.interval), job.interval);
+            }
+        }
+        scheduler = triggers;
+    }
+
+    @Override
+    public void stop() {
+        ThreadPoolTaskScheduler triggers = scheduler;
+        if (triggers == null) {
+            return;
+        }
+        triggers.shutdown();
+        for (Job job : jobs.values()) {
+            job.schedule = null;
+            if (job.executor != null) {
+                job.executor.shutdown();
+                job.executor = null;
+            }
+        }
+        scheduler = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return scheduler != null;
+    }
+
+    private static final class Job {
+        final MaintenanceJob definition;
+        final boolean enabled;
+        final Duration interval;
+        final int threads;
+        final Semaphore permits;
+
+        final AtomicLong runs = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong totalMillis = new AtomicLong();
+        // Guarded by itself
+        final Deque<Run> history = new ArrayDeque<>();
+
+        volatile boolean paused;
+        volatile ThreadPoolTaskExecutor executor;
+        volatile ScheduledFuture<?> schedule;
+
+        Job(MaintenanceJob definition, boolean enabled, Duration interval, int threads) {
+            this.definition = definition;
+            this.enabled = enabled;
+            this.interval = interval;
+            this.threads = Math.max(1, threads);
+            this.permits = new Semaphore(this.threads);
+        }
+
+        void record(Run run, int historySize) {
+            runs.incrementAndGet();
+            totalMillis.addAndGet(run.getDurationMillis());
+            if (run.getOutcome() == Outcome.FAILED) {
+                failures.incrementAndGet();
+            }
+            synchronized (history) {
+                history.addFirst(run);
+                while (history.size() > historySize) {
+                    history.removeLast();
+                }
+            }
+        }
+
+        List<Run> history() {
+            synchronized (history) {
+                return new ArrayList<>(history);
+            }
+        }
+
+        Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            long completed = runs.get();
+            status.put("name", definition.getName());
+            status.put("description", definition.getDescription());
+            status.put("scheduled", schedule != null);
+            status.put("paused", paused);
+            status.put("interval", interval.toString());
+            status.put("threads", threads);
+            status.put("running", threads - permits.availablePermits());
+            status.put("runs", completed);
+            status.put("failures", failures.get());
+            status.put("skipped", skipped.get());
+            status.put("averageMillis", completed == 0 ? 0 : totalMillis.get() / completed);
+            synchronized (history) {
+                status.put("lastRun", history.peekFirst());
+            }
+            return status;
+        }
+    }
+
+    public static final class Run {
+        private final long id;
+        private final Trigger trigger;
+        private final Outcome outcome;
+        private final LocalDateTime startedAt;
+        private final long durationMillis;
+        private final String summary;
+
+        private Run(long id, Trigger trigger, Outcome outcome, LocalDateTime startedAt, long durationMillis,
+                    String summary) {
+            this.id = id;
+            this.trigger = trigger;
+            this.outcome = outcome;
+            this.startedAt = startedAt;
+            this.durationMillis = durationMillis;
+            this.summary = summary;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public Trigger getTrigger() {
+            return trigger;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public String getSummary() {
+            return summary;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package habsida.spring.boot_security.demo.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind last-login time and login count.
+ *
+ * A login only merges into an in-memory entry per user id, so any number of logins between two
+ * flushes cost one row update. The login-activity-flush job writes all pending entries with one
+ * JDBC batch, in one transaction, that touches neither version nor updated_at; a failed flush rolls
+ * back every row and puts its entries back.
+ * A crash loses at most the logins since the last flush. Users beyond max-pending are not tracked
+ * until the next flush, and are counted as dropped.
+ */
+@Service
+@Slf4j
+public class LoginActivityTracker implements MaintenanceJob, SmartLifecycle {
+
+    private static final String UPDATE_SQL = "UPDATE users SET login_count = login_count + ?, "
+            + "last_login_at = CASE WHEN last_login_at IS NULL OR last_login_at < ? THEN ? ELSE last_login_at END "
+            + "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final int maxPending;
+
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private volatile boolean running;
+
+    public LoginActivityTracker(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.login-activity.max-pending:100000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Record a successful login. Never touches the database.
+     */
+    public void recordLogin(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        if (pending.size() >= maxPending && !pending.containsKey(userId)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.merge(userId, new Pending(System.currentTimeMillis(), 1), Pending::plus);
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * Write every pending entry with one batched UPDATE.
+     *
+     * @return the number of users updated
+     */
+    public synchronized int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Pending> drained = new HashMap<>();
+        for (Long userId : pending.keySet()) {
+            // A login merging after this remove starts a new entry for the next flush
+            Pending entry = pending.remove(userId);
+            if (entry != null) {
+                drained.put(userId, entry);
+            }
+        }
+        List<Object[]> batch = new ArrayList<>(drained.size());
+        for (Map.Entry<Long, Pending> entry : drained.entrySet()) {
+            Timestamp lastLoginAt = new Timestamp(entry.getValue().lastLoginAtMillis);
+            batch.add(new Object[]{entry.getValue().count, lastLoginAt, lastLoginAt, entry.getKey()});
+        }
+        try {
+            // All or nothing, so entries put back after a failure were not counted already
+            transaction.execute(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, batch));
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            for (Map.Entry<Long, Pending> entry : drained.entrySet()) {
+                pending.merge(entry.getKey(), entry.getValue(), Pending::plus);
+            }
+            throw e;
+        }
+        flushedRows.addAndGet(drained.size());
+        return drained.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("maxPending", maxPending);
+        stats.put("recorded", recorded.get());
+        stats.put("dropped", dropped.get());
+        stats.put("flushedRows", flushedRows.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        return stats;
+    }
+
+    @Override
+    public String getName() {
+        return "login-activity-flush";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Write buffered last-login times and login counts";
+    }
+
+    @Override
+    public Duration getDefaultInterval() {
+        return Duration.ofSeconds(5);
+    }
+
+    @Override
+    public String run() {
+        return "Updated " + flush() + " users";
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Could not flush login activity on shutdown: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private static final class Pending {
+        final long lastLoginAtMillis;
+        final long count;
+
+        Pending(long lastLoginAtMillis, long count) {
+            this.lastLoginAtMillis = lastLoginAtMillis;
+            this.count = count;
+        }
+
+        Pending plus(Pending other) {
+            return new Pending(Math.max(lastLoginAtMillis, other.lastLoginAtMillis), count + other.count);
+        }
+    }
+}
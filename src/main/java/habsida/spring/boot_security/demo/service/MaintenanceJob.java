@@ -0,0 +1,24 @@
+package habsida.spring.boot_security.demo.service;
+
+import java.time.Duration;
+
+/**
+ * Periodic background work run by {@link JobScheduler} on the job's own bounded thread pool,
+ * never on a request thread. Interval, threads and enablement can be overridden per job under
+ * {@code app.jobs.<name>.*}.
+ */
+public interface MaintenanceJob {
+
+    String getName();
+
+    String getDescription();
+
+    Duration getDefaultInterval();
+
+    /**
+     * Do one round of work. Runs outside any request, so outside any tenant.
+     *
+     * @return a one-line summary kept in the run history
+     */
+    String run() throws Exception;
+}
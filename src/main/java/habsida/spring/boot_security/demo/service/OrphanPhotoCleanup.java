@@ -0,0 +1,75 @@
+package habsida.spring.boot_security.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Deletes stored photos that neither a user nor an archived user points at, whatever their
+ * reference count says, e.g. after a failed release. Photos younger than the grace period are
+ * left alone. A photo that gains a reference while being deleted is kept by the users' foreign key.
+ */
+@Service
+public class OrphanPhotoCleanup implements MaintenanceJob {
+
+    private static final String ORPHANED = "photos.created_at < ? "
+            + "AND NOT EXISTS (SELECT 1 FROM users u WHERE u.photo_digest = photos.digest) "
+            + "AND NOT EXISTS (SELECT 1 FROM users_archive a WHERE a.photo_digest = photos.digest)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaction;
+    private final Duration grace;
+    private final int batchSize;
+
+    public OrphanPhotoCleanup(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.photo.orphan-grace:1h}") Duration grace,
+                              @Value("${app.photo.orphan-batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.grace = grace;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String getName() {
+        return "orphan-photo-cleanup";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Delete stored photos no user or archived user refers to";
+    }
+
+    @Override
+    public Duration getDefaultInterval() {
+        return Duration.ofHours(1);
+    }
+
+    @Override
+    public String run() {
+        final Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(grace));
+        List<String> digests = jdbcTemplate.queryForList("SELECT digest FROM photos WHERE " + ORPHANED
+                + " ORDER BY digest LIMIT " + batchSize, String.class, cutoff);
+        int deleted = 0;
+        for (final String digest : digests) {
+            try {
+                // One short transaction per photo, re-checked under the row lock
+                Integer rows = transaction.execute(status -> jdbcTemplate.update(
+                        "DELETE FROM photos WHERE digest = ? AND " + ORPHANED, digest, cutoff));
+                deleted += rows != null ? rows : 0;
+            } catch (DataIntegrityViolationException e) {
+                // Referenced again since the scan
+            }
+        }
+        return "Deleted " + deleted + " of " + digests.size() + " orphaned photos";
+    }
+}
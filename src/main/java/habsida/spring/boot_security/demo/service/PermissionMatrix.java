@@ -0,0 +1,71 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.Role;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable role x permission table: one permission mask per role bit index.
+ * Looking up a user costs one array read per role they hold.
+ */
+public final class PermissionMatrix {
+
+    private final long[] permissionsByRoleBit = new long[Long.SIZE];
+    private final Map<String, Integer> roleBitByAuthority = new HashMap<>();
+
+    private PermissionMatrix() {
+    }
+
+    /**
+     * Compile from roles whose permissions are already loaded.
+     */
+    public static PermissionMatrix compile(Collection<Role> roles) {
+        PermissionMatrix matrix = new PermissionMatrix();
+        for (Role role : roles) {
+            long mask = 0L;
+            for (Permission permission : role.getPermissions()) {
+                mask |= permission.getMask();
+            }
+            matrix.permissionsByRoleBit[role.getBitIndex()] = mask;
+            matrix.roleBitByAuthority.put(role.getAuthority(), role.getBitIndex());
+        }
+        return matrix;
+    }
+
+    public static PermissionMatrix empty() {
+        return compile(Collections.<Role>emptyList());
+    }
+
+    /**
+     * Permissions granted by a role mask as returned by {@code User.getAuthorityMask()}.
+     */
+    public long permissionsOf(long roleMask) {
+        long permissions = 0L;
+        long remaining = roleMask;
+        while (remaining != 0) {
+            permissions |= permissionsByRoleBit[Long.numberOfTrailingZeros(remaining)];
+            remaining &= remaining - 1;
+        }
+        return permissions;
+    }
+
+    /**
+     * Permissions granted to principals that only carry authority names, such as users not
+     * loaded through UserServiceImpl. Names that match no role grant nothing.
+     */
+    public long permissionsOf(Collection<? extends GrantedAuthority> authorities) {
+        long roleMask = 0L;
+        for (GrantedAuthority authority : authorities) {
+            Integer bit = roleBitByAuthority.get(authority.getAuthority());
+            if (bit != null) {
+                roleMask |= 1L << bit;
+            }
+        }
+        return permissionsOf(roleMask);
+    }
+}
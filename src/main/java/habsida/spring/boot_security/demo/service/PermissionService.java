@@ -0,0 +1,104 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the current {@link PermissionMatrix} of each tenant. A tenant's matrix is compiled on
+ * first use (the default tenant's when the application is ready) and again after a role change
+ * commits, so checks never touch the database.
+ */
+@Service
+public class PermissionService {
+
+    private final RoleRepository roleRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Map<String, PermissionMatrix> matrices = new ConcurrentHashMap<>();
+
+    public PermissionService(RoleRepository roleRepository, PlatformTransactionManager transactionManager) {
+        this.roleRepository = roleRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public boolean hasPermission(Authentication authentication, Permission permission) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        Object principal = authentication.getPrincipal();
+        String tenant = principal instanceof User ? ((User) principal).getTenantId() : TenantContext.getOrDefault();
+        if (permission.isPlatform() && !TenantContext.DEFAULT_TENANT.equals(tenant)) {
+            return false;
+        }
+        long granted = principal instanceof User
+                ? matrix(tenant).permissionsOf(((User) principal).getAuthorityMask())
+                : matrix(tenant).permissionsOf(authentication.getAuthorities());
+        return (granted & permission.getMask()) != 0;
+    }
+
+    public PermissionMatrix matrix(String tenant) {
+        PermissionMatrix current = matrices.get(tenant);
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            current = matrices.get(tenant);
+            if (current == null) {
+                long compiledAt = generation.get();
+                final PermissionMatrix[] compiled = new PermissionMatrix[1];
+                // The tenant filter is enabled when the transaction's entity manager is opened
+                TenantContext.runAs(tenant, () -> compiled[0] = readOnlyTransaction.execute(
+                        status -> PermissionMatrix.compile(roleRepository.findAllWithPermissions())));
+                current = compiled[0];
+                // A role change that committed meanwhile leaves it to the next caller to recompile
+                if (generation.get() == compiledAt) {
+                    matrices.put(tenant, current);
+                }
+            }
+            return current;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compileOnStartup() {
+        invalidate();
+        matrix(TenantContext.DEFAULT_TENANT);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        matrices.clear();
+    }
+
+    /**
+     * Recompile after the current transaction commits; immediately when none is active.
+     */
+    public void invalidateAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate();
+            }
+        });
+    }
+}
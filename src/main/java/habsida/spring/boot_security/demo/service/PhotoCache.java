@@ -0,0 +1,302 @@
+package habsida.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Byte-weighted LRU cache of user photos, partitioned by tenant and keyed by user id.
+ *
+ * Content lives in direct buffers, so a full cache costs the heap only its small entry objects.
+ * Each tenant's partition is capped on its own and the total is capped on top, evicting from the
+ * largest partition, so one busy tenant cannot push every other tenant's avatars out.
+ * Writers invalidate after commit and bump a generation counter; a load that started before an
+ * invalidation is served but not cached, so a slow reader can never put back a replaced photo.
+ * A load from a lagging replica can still start after the invalidation and cache the old photo,
+ * so each entry carries the user's version and a hit is only served while that is still current.
+ * Entries are local to this instance.
+ */
+@Service
+public class PhotoCache {
+
+    private final long maxBytes;
+    private final long maxTenantBytes;
+    private final long maxEntryBytes;
+
+    // All partitions and the total are guarded by this
+    private final Map<String, Partition> partitions = new HashMap<>();
+    private long usedBytes;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    public PhotoCache(@Value("${app.photo.cache.max-size:64MB}") DataSize maxSize,
+                      @Value("${app.photo.cache.max-tenant-size:${app.photo.cache.max-size:64MB}}") DataSize maxTenantSize,
+                      @Value("${app.photo.cache.max-entry-size:${app.photo.max-size:5MB}}") DataSize maxEntrySize) {
+        this.maxBytes = maxSize.toBytes();
+        this.maxTenantBytes = Math.min(maxTenantSize.toBytes(), maxBytes);
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), maxTenantBytes);
+    }
+
+    /**
+     * @return the cached photo if it was loaded at the user's current version, or null on a miss;
+     * an entry of another version is dropped
+     */
+    public Entry get(String tenant, Long userId, Long currentVersion) {
+        synchronized (this) {
+            Partition partition = partition(tenant);
+            Entry entry = partition.entries.get(userId);
+            if (entry != null && !currentVersion.equals(entry.version)) {
+                partition.entries.remove(userId);
+                partition.usedBytes -= entry.size();
+                usedBytes -= entry.size();
+                stale.incrementAndGet();
+                entry = null;
+            }
+            if (entry != null) {
+                partition.hits++;
+            } else {
+                partition.misses++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Read before loading a photo from the database and pass to {@link #put}.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Cache a photo loaded from the database. Content too large to cache, or loaded before a
+     * later invalidation, is returned in a heap buffer without being cached.
+     */
+    public Entry put(String tenant, Long userId, Long version, String contentType, byte[] content,
+                     long loadedAtGeneration) {
+        if (content.length > maxEntryBytes || generation.get() != loadedAtGeneration) {
+            return new Entry(version, contentType, ByteBuffer.wrap(content));
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(content.length);
+        buffer.put(content).flip();
+        Entry entry = new Entry(version, contentType, buffer.asReadOnlyBuffer());
+        synchronized (this) {
+            // Re-checked under the lock that invalidate() also takes
+            if (generation.get() != loadedAtGeneration) {
+                return entry;
+            }
+            Partition partition = partition(tenant);
+            Entry previous = partition.entries.put(userId, entry);
+            if (previous != null) {
+                partition.usedBytes -= previous.size();
+                usedBytes -= previous.size();
+            }
+            partition.usedBytes += entry.size();
+            usedBytes += entry.size();
+            while (partition.usedBytes > maxTenantBytes) {
+                evictEldest(partition);
+            }
+            while (usedBytes > maxBytes) {
+                evictEldest(largestPartition());
+            }
+        }
+        return entry;
+    }
+
+    public void invalidate(String tenant, Long userId) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            Partition partition = partitions.get(tenant);
+            Entry removed = partition != null ? partition.entries.remove(userId) : null;
+            if (removed != null) {
+                partition.usedBytes -= removed.size();
+                usedBytes -= removed.size();
+            }
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Invalidate once the current transaction commits, so readers cannot re-cache the old
+     * photo in between; immediately when no transaction is active.
+     */
+    public void invalidateAfterCommit(final String tenant, final Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(tenant, userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(tenant, userId);
+            }
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        Map<String, Object> tenants = new TreeMap<>();
+        long hits = 0;
+        long misses = 0;
+        int entries = 0;
+        synchronized (this) {
+            for (Map.Entry<String, Partition> tenant : partitions.entrySet()) {
+                Partition partition = tenant.getValue();
+                Map<String, Object> tenantStats = new HashMap<>();
+                tenantStats.put("entries", partition.entries.size());
+                tenantStats.put("usedBytes", partition.usedBytes);
+                tenantStats.put("hits", partition.hits);
+                tenantStats.put("misses", partition.misses);
+                tenantStats.put("hitRatio", hitRatio(partition.hits, partition.misses));
+                tenants.put(tenant.getKey(), tenantStats);
+                hits += partition.hits;
+                misses += partition.misses;
+                entries += partition.entries.size();
+            }
+            stats.put("usedBytes", usedBytes);
+        }
+        stats.put("entries", entries);
+        stats.put("maxBytes", maxBytes);
+        stats.put("maxTenantBytes", maxTenantBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", hitRatio(hits, misses));
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        stats.put("stale", stale.get());
+        stats.put("tenants", tenants);
+        // JVM-wide, for comparison with -XX:MaxDirectMemorySize
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if ("direct".equals(pool.getName())) {
+                stats.put("directMemoryUsedBytes", pool.getMemoryUsed());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Counters of one tenant's partition only, for that tenant's admins.
+     */
+    public Map<String, Object> stats(String tenant) {
+        Map<String, Object> stats = new HashMap<>();
+        synchronized (this) {
+            Partition partition = partitions.get(tenant);
+            long hits = partition != null ? partition.hits : 0;
+            long misses = partition != null ? partition.misses : 0;
+            stats.put("entries", partition != null ? partition.entries.size() : 0);
+            stats.put("usedBytes", partition != null ? partition.usedBytes : 0L);
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("hitRatio", hitRatio(hits, misses));
+        }
+        stats.put("tenant", tenant);
+        stats.put("maxTenantBytes", maxTenantBytes);
+        return stats;
+    }
+
+    private static double hitRatio(long hits, long misses) {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    private Partition partition(String tenant) {
+        Partition partition = partitions.get(tenant);
+        if (partition == null) {
+            partition = new Partition();
+            partitions.put(tenant, partition);
+        }
+        return partition;
+    }
+
+    private Partition largestPartition() {
+        Partition largest = null;
+        for (Partition partition : partitions.values()) {
+            if (largest == null || partition.usedBytes > largest.usedBytes) {
+                largest = partition;
+            }
+        }
+        return largest;
+    }
+
+    private void evictEldest(Partition partition) {
+        Iterator<Entry> eldest = partition.entries.values().iterator();
+        Entry evicted = eldest.next();
+        eldest.remove();
+        partition.usedBytes -= evicted.size();
+        usedBytes -= evicted.size();
+        evictions.incrementAndGet();
+    }
+
+    private static final class Partition {
+        // Access-ordered, so iteration starts at the least recently used entry
+        final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+        long usedBytes;
+        long hits;
+        long misses;
+    }
+
+    public static final class Entry {
+        private final Long version;
+        private final String contentType;
+        private final ByteBuffer content;
+
+        private Entry(Long version, String contentType, ByteBuffer content) {
+            this.version = version;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        public Long getVersion() {
+            return version;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public int size() {
+            return content.remaining();
+        }
+
+        /**
+         * A response body that copies straight from the buffer; each call reads its own view.
+         */
+        public Resource asResource() {
+            final ByteBuffer view = content.duplicate();
+            return new AbstractResource() {
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteBufferBackedInputStream(view.duplicate());
+                }
+
+                @Override
+                public long contentLength() {
+                    return view.remaining();
+                }
+
+                @Override
+                public String getDescription() {
+                    return "cached photo";
+                }
+            };
+        }
+    }
+}
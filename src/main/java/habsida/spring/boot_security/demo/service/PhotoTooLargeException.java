@@ -0,0 +1,20 @@
+package habsida.spring.boot_security.demo.service;
+
+import java.io.IOException;
+
+/**
+ * Thrown while streaming a photo once more than the allowed number of bytes has been read.
+ */
+public class PhotoTooLargeException extends IOException {
+
+    private final long maxBytes;
+
+    public PhotoTooLargeException(long maxBytes) {
+        super("Photo exceeds the maximum size of " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
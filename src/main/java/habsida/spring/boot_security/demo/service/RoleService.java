@@ -1,14 +1,24 @@
 package habsida.spring.boot_security.demo.service;
 
+import habsida.spring.boot_security.demo.dto.RoleDto;
 import habsida.spring.boot_security.demo.model.Role;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public interface RoleService {
     List<Role> findAll();
+
+    /**
+     * All roles with their permissions, read-only. Concurrent calls share one query and one list.
+     */
+    List<RoleDto> findAllDtos();
+
+    Map<String, Object> roleLookupStats();
+
     Optional<Role> findById(Long id);
     Optional<Role> findByName(String name);
     Role save(Role role);
@@ -1,45 +1,96 @@
 package habsida.spring.boot_security.demo.service;
 
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.dto.RoleDto;
+import habsida.spring.boot_security.demo.dto.RoleMapper;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.repository.RoleRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class RoleServiceImpl implements RoleService {
 
     private final RoleRepository roleRepository;
+    private final PermissionService permissionService;
+    private final TransactionTemplate readOnlyTransaction;
+    private final RoleMapper roleMapper;
+
+    // Keyed by tenant; many clients load the role list at the same moment
+    private final SingleFlight<String, List<RoleDto>> roleLookups = new SingleFlight<>();
 
     @Autowired
-    public RoleServiceImpl(RoleRepository roleRepository) {
+    public RoleServiceImpl(RoleRepository roleRepository, PermissionService permissionService,
+                           PlatformTransactionManager transactionManager, RoleMapper roleMapper) {
         this.roleRepository = roleRepository;
+        this.permissionService = permissionService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.roleMapper = roleMapper;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<Role> findAll() {
         return roleRepository.findAll();
     }
 
     @Override
+    public List<RoleDto> findAllDtos() {
+        // Inside a transaction the caller must see its own uncommitted changes
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loadDtos();
+        }
+        return roleLookups.execute(TenantContext.getOrDefault(), () -> readOnlyTransaction.execute(status -> loadDtos()));
+    }
+
+    @Override
+    public Map<String, Object> roleLookupStats() {
+        return roleLookups.stats();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<Role> findById(Long id) {
-        return roleRepository.findById(id);
+        return roleRepository.findVisibleById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<Role> findByName(String name) {
         return roleRepository.findByName(name);
     }
 
     @Override
+    @Transactional
     public Role save(Role role) {
+        if (role.getBitIndex() == null) {
+            role.setBitIndex(roleRepository.nextFreeBitIndex());
+        }
+        permissionService.invalidateAfterCommit();
         return roleRepository.save(role);
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
-        roleRepository.deleteById(id);
+        roleRepository.findVisibleById(id).ifPresent(roleRepository::delete);
+        permissionService.invalidateAfterCommit();
+    }
+
+    private List<RoleDto> loadDtos() {
+        return Collections.unmodifiableList(roleRepository.findAll().stream()
+                .map(roleMapper::toDto)
+                .collect(Collectors.toList()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,169 @@
+package habsida.spring.boot_security.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The slowest requests since startup, with their timing breakdown
+ * ({@code /api/admin/diagnostics/slow-requests}). A fixed array of slots: a request slower
+ * than the fastest one kept replaces it with a single CAS, so recording never takes a lock.
+ * Requests under min-duration are not considered at all.
+ */
+@Service
+public class SlowRequestLog {
+
+    // A slot that keeps changing under us is given up rather than spun on
+    private static final int MAX_ATTEMPTS = 4;
+
+    private final AtomicReferenceArray<SlowRequest> slots;
+    private final long minDurationMillis;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+
+    public SlowRequestLog(@Value("${app.diagnostics.slow-requests.size:50}") int size,
+                          @Value("${app.diagnostics.slow-requests.min-duration:100ms}") Duration minDuration) {
+        this.slots = new AtomicReferenceArray<>(Math.max(1, size));
+        this.minDurationMillis = minDuration.toMillis();
+    }
+
+    public boolean isCandidate(long durationMillis) {
+        return durationMillis >= minDurationMillis;
+    }
+
+    /**
+     * Keeps the request if it is slower than the fastest one kept, or a slot is free.
+     */
+    public void offer(SlowRequest request) {
+        if (!isCandidate(request.getDurationMillis())) {
+            return;
+        }
+        offered.incrementAndGet();
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            int victim = -1;
+            SlowRequest fastest = null;
+            for (int i = 0; i < slots.length(); i++) {
+                SlowRequest kept = slots.get(i);
+                if (kept == null) {
+                    victim = i;
+                    fastest = null;
+                    break;
+                }
+                if (fastest == null || kept.getDurationMillis() < fastest.getDurationMillis()) {
+                    victim = i;
+                    fastest = kept;
+                }
+            }
+            if (fastest != null && fastest.getDurationMillis() >= request.getDurationMillis()) {
+                return;
+            }
+            if (slots.compareAndSet(victim, fastest, request)) {
+                recorded.incrementAndGet();
+                return;
+            }
+        }
+        contended.incrementAndGet();
+    }
+
+    /**
+     * The requests kept, slowest first.
+     */
+    public List<SlowRequest> slowest() {
+        List<SlowRequest> requests = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            SlowRequest request = slots.get(i);
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        requests.sort(Comparator.comparingLong(SlowRequest::getDurationMillis).reversed());
+        return requests;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("size", slots.length());
+        stats.put("minDurationMillis", minDurationMillis);
+        stats.put("offered", offered.get());
+        stats.put("recorded", recorded.get());
+        stats.put("contended", contended.get());
+        return stats;
+    }
+
+    public static final class SlowRequest {
+        private final String requestId;
+        private final String method;
+        private final String path;
+        private final int status;
+        private final LocalDateTime startedAt;
+        private final long durationMillis;
+        private final Map<String, Long> phaseMicros;
+        private final int queryCount;
+        private final Map<String, Integer> queries;
+
+        public SlowRequest(String requestId, String method, String path, int status, LocalDateTime startedAt,
+                           long durationMillis, Map<String, Long> phaseMicros, int queryCount,
+                           Map<String, Integer> queries) {
+            this.requestId = requestId;
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.startedAt = startedAt;
+            this.durationMillis = durationMillis;
+            this.phaseMicros = Collections.unmodifiableMap(phaseMicros);
+            this.queryCount = queryCount;
+            this.queries = Collections.unmodifiableMap(queries);
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public long getDurationMillis() {
+            return durationMillis;
+        }
+
+        public Map<String, Long> getPhaseMicros() {
+            return phaseMicros;
+        }
+
+        public int getQueryCount() {
+            return queryCount;
+        }
+
+        /**
+         * Statement text as prepared, with the number of times the request sent it.
+         */
+        public Map<String, Integer> getQueries() {
+            return queries;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package habsida.spring.boot_security.demo.service;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
+import habsida.spring.boot_security.demo.repository.PhotoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves soft-deleted and long-inactive users out of the hot {@code users} table into
+ * {@code users_archive}, together with their role links, and moves them back on restore.
+ *
+ * Runs as the user-archival job. Each run works in batches of at most batch-size users, one short
+ * transaction per batch, and stops after max-batches so a large backlog is worked off over several
+ * runs. Deleted users are archived on the next run; inactive ones once they have not been updated
+ * for inactive-after.
+ * Archived rows keep their photo digest, so the shared photo stays referenced until a restore.
+ * Rows archived longer ago than retention are purged for good, releasing their photo reference;
+ * they can no longer be restored.
+ */
+@Service
+@Slf4j
+public class UserArchiver implements MaintenanceJob {
+
+    private static final String COLUMNS = "id, tenant_id, username, email, first_name, last_name, age, password, "
+            + "photo_digest, photo_content_type, is_active, created_at, updated_at, deleted_at, version, "
+            + "last_login_at, login_count";
+
+    // Each served by its own index: idx_users_deleted_at and idx_users_is_active_updated_at
+    private static final String DELETED = "deleted_at IS NOT NULL";
+    private static final String INACTIVE = "deleted_at IS NULL AND is_active = :active AND updated_at < :cutoff";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate transaction;
+    private final PhotoCache photoCache;
+    private final PhotoRepository photoRepository;
+    private final Duration inactiveAfter;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatches;
+
+    private final AtomicLong archived = new AtomicLong();
+    private final AtomicLong restored = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+
+    public UserArchiver(JdbcTemplate jdbcTemplate,
+                        PlatformTransactionManager transactionManager,
+                        PhotoCache photoCache,
+                        PhotoRepository photoRepository,
+                        @Value("${app.archive.inactive-after:180d}") Duration inactiveAfter,
+                        @Value("${app.archive.retention:365d}") Duration retention,
+                        @Value("${app.archive.batch-size:500}") int batchSize,
+                        @Value("${app.archive.max-batches:20}") int maxBatches) {
+        this.jdbc = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.photoCache = photoCache;
+        this.photoRepository = photoRepository;
+        this.inactiveAfter = inactiveAfter;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+    }
+
+    @Override
+    public String getName() {
+        return "user-archival";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Move deleted and long-inactive users to the archive tables, purge those past retention";
+    }
+
+    @Override
+    public Duration getDefaultInterval() {
+        return Duration.ofMinutes(10);
+    }
+
+    @Override
+    public String run() {
+        return "Archived " + archive() + " users, purged " + purge() + " past retention";
+    }
+
+    /**
+     * Archive up to max-batches batches of deleted users, then of inactive ones, across all tenants.
+     *
+     * @return the number of users archived by this run
+     */
+    public synchronized int archive() {
+        MapSqlParameterSource inactive = new MapSqlParameterSource()
+                .addValue("active", false)
+                .addValue("cutoff", Timestamp.valueOf(LocalDateTime.now().minus(inactiveAfter)));
+        int moved = archiveAll(DELETED, new MapSqlParameterSource()) + archiveAll(INACTIVE, inactive);
+        archived.addAndGet(moved);
+        if (moved > 0) {
+            log.info("Archived {} users", moved);
+        }
+        return moved;
+    }
+
+    /**
+     * Delete up to max-batches batches of users archived longer ago than retention, across all
+     * tenants, and release their photos.
+     *
+     * @return the number of archived users purged by this run
+     */
+    public synchronized int purge() {
+        final MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cutoff", Timestamp.valueOf(LocalDateTime.now().minus(retention)));
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer removed = transaction.execute(status -> purgeBatch(params));
+            total += removed;
+            if (removed < batchSize) {
+                break;
+            }
+        }
+        purged.addAndGet(total);
+        if (total > 0) {
+            log.info("Purged {} archived users", total);
+        }
+        return total;
+    }
+
+    /**
+     * Bring a soft-deleted or archived user of the current tenant back into the hot table.
+     * An archived user's links to roles deleted in the meantime are dropped.
+     *
+     * @return false if the tenant has no deleted or archived user with that id
+     * @throws IllegalStateException if the user's email or username has been taken since
+     */
+    @Transactional
+    public boolean restore(Long id) {
+        String tenant = TenantContext.getOrDefault();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("id", id)
+                .addValue("tenant", tenant)
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+
+        // Not archived yet: clearing the mark is enough
+        if (jdbc.update("UPDATE users SET deleted_at = NULL, updated_at = :now, version = version + 1 "
+                + "WHERE id = :id AND tenant_id = :tenant AND deleted_at IS NOT NULL", params) == 1) {
+            restored.incrementAndGet();
+            return true;
+        }
+
+        List<Map<String, Object>> rows = jdbc.queryForList("SELECT email, username FROM users_archive "
+                + "WHERE id = :id AND tenant_id = :tenant FOR UPDATE", params);
+        if (rows.isEmpty()) {
+            return false;
+        }
+        params.addValue("email", rows.get(0).get("email")).addValue("username", rows.get(0).get("username"));
+        Integer taken = jdbc.queryForObject("SELECT COUNT(*) FROM users WHERE email = :email OR username = :username",
+                params, Integer.class);
+        if (taken != null && taken > 0) {
+            throw new IllegalStateException("Email already in use by another user: " + rows.get(0).get("email"));
+        }
+
+        // Restored users start a fresh inactivity period, or the next run would archive them again
+        jdbc.update("INSERT INTO users (" + COLUMNS + ") SELECT id, tenant_id, username, email, first_name, last_name, "
+                + "age, password, photo_digest, photo_content_type, is_active, created_at, :now, NULL, version + 1, "
+                + "last_login_at, login_count "
+                + "FROM users_archive WHERE id = :id", params);
+        jdbc.update("INSERT INTO users_roles (user_id, role_id) SELECT a.user_id, a.role_id "
+                + "FROM users_roles_archive a JOIN roles r ON r.id = a.role_id WHERE a.user_id = :id", params);
+        jdbc.update("DELETE FROM users_roles_archive WHERE user_id = :id", params);
+        jdbc.update("DELETE FROM users_archive WHERE id = :id", params);
+        restored.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Archived users of the current tenant in id order, with the names of the roles they held.
+     */
+    @Transactional(readOnly = true)
+    public List<UserSummaryDto> findArchived(long afterId, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("tenant", TenantContext.getOrDefault())
+                .addValue("afterId", afterId);
+        final Map<Long, UserSummaryDto> byId = new LinkedHashMap<>();
+        jdbc.query("SELECT id, first_name, last_name, email, age, is_active, created_at, version FROM users_archive "
+                + "WHERE tenant_id = :tenant AND id > :afterId ORDER BY id LIMIT " + Math.max(0, limit), params, rs -> {
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            UserSummaryDto summary = new UserSummaryDto(rs.getLong("id"), rs.getString("first_name"),
+                    rs.getString("last_name"), rs.getString("email"), rs.getInt("age"), rs.getBoolean("is_active"),
+                    createdAt != null ? createdAt.toLocalDateTime() : null, rs.getLong("version"));
+            summary.setRoles(new HashSet<>());
+            byId.put(summary.getId(), summary);
+        });
+        if (!byId.isEmpty()) {
+            params.addValue("ids", byId.keySet());
+            jdbc.query("SELECT a.user_id, r.name FROM users_roles_archive a JOIN roles r ON r.id = a.role_id "
+                    + "WHERE a.user_id IN (:ids)", params, rs -> {
+                byId.get(rs.getLong(1)).getRoles().add(rs.getString(2));
+            });
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("archived", archived.get());
+        stats.put("restored", restored.get());
+        stats.put("purged", purged.get());
+        stats.put("retention", retention.toString());
+        stats.put("batchSize", batchSize);
+        stats.put("inactiveAfter", inactiveAfter.toString());
+        return stats;
+    }
+
+    private int archiveAll(String condition, MapSqlParameterSource params) {
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer moved = transaction.execute(status -> archiveBatch(condition, params));
+            total += moved;
+            if (moved < batchSize) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private int purgeBatch(MapSqlParameterSource params) {
+        final List<Long> ids = new ArrayList<>();
+        final List<String> digests = new ArrayList<>();
+        // Locked, so a concurrent restore is waited for
+        jdbc.query("SELECT id, photo_digest FROM users_archive WHERE archived_at < :cutoff ORDER BY id LIMIT "
+                + batchSize + " FOR UPDATE", params, rs -> {
+            ids.add(rs.getLong(1));
+            if (rs.getString(2) != null) {
+                digests.add(rs.getString(2));
+            }
+        });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource batch = new MapSqlParameterSource().addValue("ids", ids);
+        jdbc.update("DELETE FROM users_roles_archive WHERE user_id IN (:ids)", batch);
+        jdbc.update("DELETE FROM users_archive WHERE id IN (:ids)", batch);
+        // After the rows are gone, or their foreign key would keep a photo whose count reached zero
+        for (String digest : digests) {
+            photoRepository.releaseReference(digest);
+        }
+        return ids.size();
+    }
+
+    private int archiveBatch(String condition, MapSqlParameterSource params) {
+        final List<Long> ids = new ArrayList<>();
+        final Map<Long, String> tenants = new HashMap<>();
+        // Locked, so a user enabled or restored meanwhile is either waited for or left alone
+        jdbc.query("SELECT id, tenant_id FROM users WHERE " + condition + " ORDER BY id LIMIT " + batchSize
+                + " FOR UPDATE", params, rs -> {
+            ids.add(rs.getLong(1));
+            tenants.put(rs.getLong(1), rs.getString(2));
+        });
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        MapSqlParameterSource batch = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+        jdbc.update("INSERT INTO users_archive (" + COLUMNS + ", archived_at) SELECT " + COLUMNS + ", :now "
+                + "FROM users WHERE id IN (:ids)", batch);
+        jdbc.update("INSERT INTO users_roles_archive (user_id, role_id) SELECT user_id, role_id "
+                + "FROM users_roles WHERE user_id IN (:ids)", batch);
+        jdbc.update("DELETE FROM users_roles WHERE user_id IN (:ids)", batch);
+        jdbc.update("DELETE FROM users WHERE id IN (:ids)", batch);
+        for (Map.Entry<Long, String> user : tenants.entrySet()) {
+            photoCache.invalidateAfterCommit(user.getValue(), user.getKey());
+        }
+        return ids.size();
+    }
+}
@@ -1,12 +1,18 @@
 package habsida.spring.boot_security.demo.service;
 
+import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
 import habsida.spring.boot_security.demo.model.Role;
 import habsida.spring.boot_security.demo.model.User;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public interface UserService {
@@ -19,17 +25,63 @@ public interface UserService {
 
     List<User> findAllUsers();
 
+    List<UserSummaryDto> findAllSummaries();
+
+    /**
+     * Hand each user summary, in id order, to the action as it is read from a database cursor.
+     * Only one summary is held in memory at a time.
+     */
+    void forEachSummary(Consumer<UserSummaryDto> action);
+
     Optional<User> findById(Long id);
 
+    /**
+     * Current version of a user, without loading the row; empty if there is no such user.
+     */
+    Optional<Long> findVersionById(Long id);
+
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
 
-    void saveUser(User user);
+    /**
+     * Read-only view of a user, for "who am I" requests. Concurrent calls for the same email share
+     * one query and one result, which callers must not modify.
+     */
+    Optional<UserDto> findCurrentUser(String email);
+
+    Map<String, Object> currentUserLookupStats();
+
+    User saveUser(User user);
+
+    /**
+     * Apply a JSON Merge Patch document to a user without loading it.
+     * Only the columns present in the patch are written; roles are replaced only if "roleIds" is present.
+     *
+     * @return the user's new version
+     */
+    Long patchUser(Long id, Long expectedVersion, Map<String, Object> patch);
 
     void saveUserWithRoles(User user, List<Long> roleIds);
 
     Set<Role> findAllRoles();
 
-    void updateUserPhoto(String email, byte[] photo, String contentType);
+    /**
+     * Store a photo streamed from the given source. The image type is detected from the content
+     * and the upload is rejected once it exceeds the configured maximum size. Identical content is
+     * stored once and shared by SHA-256 digest; the source is read a second time only for new content.
+     *
+     * @return the detected image type
+     * @throws IllegalArgumentException if the content is not a supported image
+     * @throws PhotoTooLargeException if the content is larger than allowed
+     */
+    ImageType updateUserPhoto(String email, InputStreamSource source) throws IOException;
+
+    void deleteUserPhoto(String email);
+
+    long countUsers();
+
+    long countActiveUsers();
+
+    long countUsersWithRole(String roleName);
 }
\ No newline at end of file
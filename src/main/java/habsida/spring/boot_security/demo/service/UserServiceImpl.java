@@ -1,50 +1,109 @@
 package habsida.spring.boot_security.demo.service;
 
+import habsida.spring.boot_security.demo.configs.RequestProfile;
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.configs.UserSessionRegistry;
+import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.dto.UserMapper;
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
+import habsida.spring.boot_security.demo.repository.PhotoRepository;
 import habsida.spring.boot_security.demo.repository.RoleRepository;
 import habsida.spring.boot_security.demo.repository.UserRepository;
 import habsida.spring.boot_security.demo.model.User;
 import habsida.spring.boot_security.demo.model.Role;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 
+import javax.persistence.EntityNotFoundException;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
-import org.springframework.security.core.GrantedAuthority;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
+@Slf4j
 public class UserServiceImpl implements UserService, UserDetailsService {
 
+    // Upload read buffer; the only per-upload heap besides the driver's own
+    private static final int PHOTO_BUFFER_SIZE = 8192;
+
     private final UserRepository userRepository;
+    private final PhotoRepository photoRepository;
+    private final PhotoCache photoCache;
+    private final UserSessionRegistry sessionRegistry;
     private final RoleRepository roleRepository;
     private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final long maxPhotoBytes;
+    private final TransactionTemplate readOnlyTransaction;
+    private final UserMapper userMapper;
+
+    // Keyed by tenant and email; a dashboard asks for the current user from several components at once
+    private final SingleFlight<String, Optional<UserDto>> currentUserLookups = new SingleFlight<>();
 
     @Autowired
     public UserServiceImpl(UserRepository userRepository,
+                           PhotoRepository photoRepository,
+                           PhotoCache photoCache,
+                           UserSessionRegistry sessionRegistry,
                            RoleService roleService,
                            RoleRepository roleRepository,
-                           PasswordEncoder passwordEncoder) {
+                           PasswordEncoder passwordEncoder,
+                           Validator validator,
+                           PlatformTransactionManager transactionManager,
+                           UserMapper userMapper,
+                           @Value("${app.photo.max-size:5MB}") DataSize maxPhotoSize) {
         this.userRepository = userRepository;
+        this.photoRepository = photoRepository;
+        this.photoCache = photoCache;
+        this.sessionRegistry = sessionRegistry;
         this.roleService = roleService;
         this.roleRepository = roleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.maxPhotoBytes = maxPhotoSize.toBytes();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.userMapper = userMapper;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<User> findAllWithRoles() {
         return userRepository.findAllWithRoles();
     }
 
     @Override
+    @Transactional
     public void updateUser(Long id, String firstName, String lastName, int age, String email, String password, List<Long> roleIds) {
-        User user = userRepository.findById(id).orElseThrow(() -> new RuntimeException("User not found"));
+        User user = userRepository.findVisibleById(id).orElseThrow(() -> new RuntimeException("User not found"));
 
         user.setFirstName(firstName);
         user.setLastName(lastName);
@@ -52,14 +111,17 @@ public class UserServiceImpl implements UserService, UserDetailsService {
         user.setEmail(email);
 
         // Update roles
+        Set<Long> previousRoleIds = roleIdsOf(user.getRoles());
         Set<Role> roles = new HashSet<>(roleRepository.findAllById(roleIds));
         user.setRoles(roles);
 
         userRepository.save(user);
+        expireSessionsIfAccessChanged(user, previousRoleIds);
     }
 
     @Override
-    public void saveUser(User user) {
+    @Transactional
+    public User saveUser(User user) {
         // Always sync username to email
         user.setUsername(user.getEmail());
 
@@ -69,12 +131,131 @@ public class UserServiceImpl implements UserService, UserDetailsService {
                     .orElseThrow(() -> new RuntimeException("Role not found: " + role.getName()));
             resolvedRoles.add(dbRole);
         }
+        Set<Long> previousRoleIds = user.getId() != null
+                ? new HashSet<>(userRepository.findStoredRoleIds(user.getId())) : null;
         user.setRoles(resolvedRoles);
 
-        userRepository.save(user);
+        User saved = userRepository.save(user);
+        if (previousRoleIds != null) {
+            expireSessionsIfAccessChanged(saved, previousRoleIds);
+        }
+        return saved;
+    }
+
+    // Sessions keep the authorities they logged in with, so losing access or changing roles needs a new login
+    private void expireSessionsIfAccessChanged(User user, Set<Long> previousRoleIds) {
+        if (!user.isActive() || !previousRoleIds.equals(roleIdsOf(user.getRoles()))) {
+            sessionRegistry.expireUserSessionsAfterCommit(user.getId());
+        }
+    }
+
+    private static Set<Long> roleIdsOf(Set<Role> roles) {
+        Set<Long> ids = new HashSet<>();
+        if (roles != null) {
+            for (Role role : roles) {
+                ids.add(role.getId());
+            }
+        }
+        return ids;
     }
 
     @Override
+    @Transactional
+    public Long patchUser(Long id, Long expectedVersion, Map<String, Object> patch) {
+        Map<String, Object> columns = new HashMap<>();
+        List<Long> roleIds = null;
+
+        for (Map.Entry<String, Object> entry : patch.entrySet()) {
+            String field = entry.getKey();
+            Object value = entry.getValue();
+            switch (field) {
+                case "firstName":
+                case "lastName":
+                    columns.put(field, validated(field, asString(field, value)));
+                    break;
+                case "age":
+                    columns.put(field, validated(field, asInt(field, value)));
+                    break;
+                case "email":
+                    String email = validated(field, asString(field, value));
+                    if (userRepository.existsByEmailAndIdNot(email, id)) {
+                        throw new IllegalArgumentException("Email already exists: " + email);
+                    }
+                    columns.put("email", email);
+                    // Always sync username to email
+                    columns.put("username", email);
+                    break;
+                case "password":
+                    String rawPassword = validated(field, asString(field, value));
+                    columns.put("password", passwordEncoder.encode(rawPassword));
+                    break;
+                case "roleIds":
+                    roleIds = resolveRoleIds(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Field cannot be patched: " + field);
+            }
+        }
+        if (columns.isEmpty() && roleIds == null) {
+            throw new IllegalArgumentException("Patch document contains no changes");
+        }
+
+        if (userRepository.updateColumns(id, expectedVersion, columns) == 0) {
+            if (!userRepository.existsById(id)) {
+                throw new EntityNotFoundException("User not found with ID: " + id);
+            }
+            throw new ObjectOptimisticLockingFailureException(User.class, id);
+        }
+        if (roleIds != null) {
+            userRepository.replaceRoles(id, roleIds);
+        }
+        if (roleIds != null || columns.containsKey("password")) {
+            sessionRegistry.expireUserSessionsAfterCommit(id);
+        }
+        return expectedVersion + 1;
+    }
+
+    private <T> T validated(String field, T value) {
+        Set<ConstraintViolation<User>> violations = validator.validateValue(User.class, field, value);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.iterator().next().getMessage());
+        }
+        return value;
+    }
+
+    private static String asString(String field, Object value) {
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return (String) value;
+    }
+
+    private static Integer asInt(String field, Object value) {
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException(field + " must be a number");
+        }
+        return ((Number) value).intValue();
+    }
+
+    private List<Long> resolveRoleIds(Object value) {
+        if (!(value instanceof List) || ((List<?>) value).isEmpty()) {
+            throw new IllegalArgumentException("At least one role must be selected");
+        }
+        List<Long> roleIds = new ArrayList<>();
+        for (Object raw : (List<?>) value) {
+            Long roleId = Long.valueOf(raw.toString());
+            if (!roleService.findById(roleId).isPresent()) {
+                throw new IllegalArgumentException("Role not found with ID: " + roleId);
+            }
+            if (!roleIds.contains(roleId)) {
+                roleIds.add(roleId);
+            }
+        }
+        return roleIds;
+    }
+
+    @Override
+    @Transactional
     public void saveUserWithRoles(User user, List<Long> roleIds) {
         // Set username to email
         user.setUsername(user.getEmail());
@@ -86,78 +267,258 @@ public class UserServiceImpl implements UserService, UserDetailsService {
                     .orElseThrow(() -> new RuntimeException("Role not found with ID: " + roleId));
             roles.add(role);
         }
+        Set<Long> previousRoleIds = user.getId() != null
+                ? new HashSet<>(userRepository.findStoredRoleIds(user.getId())) : null;
         user.setRoles(roles);
         
         userRepository.save(user);
+        if (previousRoleIds != null) {
+            expireSessionsIfAccessChanged(user, previousRoleIds);
+        }
     }
 
     @Override
+    @Transactional
     public void deleteUser(Long id) {
-        userRepository.deleteById(id);
+        User user = userRepository.findVisibleById(id).orElse(null);
+        if (user == null) {
+            return;
+        }
+        // Role links and the photo reference stay with the row, so the user can still be restored
+        userRepository.markDeleted(id);
+        photoCache.invalidateAfterCommit(user.getTenantId(), id);
+        sessionRegistry.expireUserSessionsAfterCommit(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
 
     @Override
+    public Optional<UserDto> findCurrentUser(String email) {
+        // Inside a transaction the caller must see its own uncommitted changes
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return userRepository.findByEmail(email).map(userMapper::toDto);
+        }
+        return currentUserLookups.execute(TenantContext.getOrDefault() + ":" + email,
+                () -> readOnlyTransaction.execute(status -> userRepository.findByEmail(email).map(userMapper::toDto)));
+    }
+
+    @Override
+    public Map<String, Object> currentUserLookupStats() {
+        return currentUserLookups.stats();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<User> findAllUsers() {
         return userRepository.findAll();
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<UserSummaryDto> findAllSummaries() {
+        List<UserSummaryDto> summaries = userRepository.findAllSummaries();
+        Map<Long, UserSummaryDto> byId = new HashMap<>();
+        for (UserSummaryDto summary : summaries) {
+            summary.setRoles(new HashSet<>());
+            byId.put(summary.getId(), summary);
+        }
+        for (Object[] row : userRepository.findAllUserRoleNames()) {
+            UserSummaryDto summary = byId.get((Long) row[0]);
+            if (summary != null) {
+                summary.getRoles().add((String) row[1]);
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void forEachSummary(Consumer<UserSummaryDto> action) {
+        try (Stream<Object[]> rows = userRepository.streamSummaryRows()) {
+            UserSummaryDto current = null;
+            for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                Long id = (Long) row[0];
+                if (current == null || !current.getId().equals(id)) {
+                    if (current != null) {
+                        action.accept(current);
+                    }
+                    current = new UserSummaryDto(id, (String) row[1], (String) row[2], (String) row[3],
+                            (Integer) row[4], (Boolean) row[5], (LocalDateTime) row[6], (Long) row[7]);
+                    current.setRoles(new HashSet<>());
+                }
+                if (row[8] != null) {
+                    current.getRoles().add((String) row[8]);
+                }
+            }
+            if (current != null) {
+                action.accept(current);
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
-        return userRepository.findById(id);
+        return userRepository.findVisibleById(id);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public Optional<Long> findVersionById(Long id) {
+        return userRepository.findVersionById(id);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Set<Role> findAllRoles() {
         return new HashSet<>(roleService.findAll());
     }
 
     @Override
-    public void updateUserPhoto(String email, byte[] photo, String contentType) {
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setPhoto(photo);
-            user.setPhotoContentType(contentType);
-            userRepository.save(user);
+    @Transactional(rollbackFor = IOException.class)
+    public ImageType updateUserPhoto(String email, InputStreamSource source) throws IOException {
+        // First pass: type, size and digest, before anything is locked or written
+        ScannedPhoto photo;
+        try (InputStream content = source.getInputStream()) {
+            photo = scanPhoto(content);
+        }
+
+        String previous = userRepository.lockPhotoDigest(email);
+        if (photo.digest.equals(previous)) {
+            return photo.type;
         }
+        if (!photoRepository.addReference(photo.digest)) {
+            // Second pass only for content the store has never seen
+            boolean inserted;
+            try (InputStream content = source.getInputStream()) {
+                inserted = photoRepository.insert(photo.digest, new BufferedInputStream(content, PHOTO_BUFFER_SIZE),
+                        photo.type.getMediaType(), photo.size);
+            }
+            if (!inserted && !photoRepository.addReference(photo.digest)) {
+                throw new IllegalStateException("Photo " + photo.digest + " vanished while being stored");
+            }
+        }
+        userRepository.updatePhotoDigest(email, photo.digest, photo.type.getMediaType());
+        invalidateCachedPhoto(email);
+        if (previous != null) {
+            photoRepository.releaseReference(previous);
+        }
+        return photo.type;
     }
 
     @Override
+    @Transactional
+    public void deleteUserPhoto(String email) {
+        String previous = userRepository.lockPhotoDigest(email);
+        if (previous != null) {
+            userRepository.updatePhotoDigest(email, null, null);
+            invalidateCachedPhoto(email);
+            photoRepository.releaseReference(previous);
+        }
+    }
+
+    private void invalidateCachedPhoto(String email) {
+        String tenant = TenantContext.getOrDefault();
+        userRepository.findIdByEmail(email).ifPresent(id -> photoCache.invalidateAfterCommit(tenant, id));
+    }
+
+    private ScannedPhoto scanPhoto(InputStream content) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(content, PHOTO_BUFFER_SIZE);
+        input.mark(ImageType.HEADER_LENGTH);
+        byte[] header = new byte[ImageType.HEADER_LENGTH];
+        int headerLength = 0;
+        int read;
+        while (headerLength < header.length
+                && (read = input.read(header, headerLength, header.length - headerLength)) != -1) {
+            headerLength += read;
+        }
+        ImageType type = ImageType.detect(header, headerLength);
+        if (type == null) {
+            throw new IllegalArgumentException("Only JPEG, PNG, GIF or WebP images are allowed");
+        }
+        input.reset();
+
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        SizeLimitedInputStream limited = new SizeLimitedInputStream(input, maxPhotoBytes);
+        byte[] buffer = new byte[PHOTO_BUFFER_SIZE];
+        long size = 0;
+        while ((read = limited.read(buffer)) != -1) {
+            sha256.update(buffer, 0, read);
+            size += read;
+        }
+        return new ScannedPhoto(type, toHex(sha256.digest()), size);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static final class ScannedPhoto {
+        private final ImageType type;
+        private final String digest;
+        private final long size;
+
+        private ScannedPhoto(ImageType type, String digest, long size) {
+            this.type = type;
+            this.digest = digest;
+            this.size = size;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countUsers() {
+        return userRepository.count();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countActiveUsers() {
+        return userRepository.countByIsActive(true);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countUsersWithRole(String roleName) {
+        return userRepository.countByRoleName(roleName);
+    }
+
+    // Not read-only on purpose: logins must see the primary, a lagging replica could reject a new password
+    @Override
+    @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        System.out.println("=== Authentication Debug ===");
-        System.out.println("Attempting to load user with email: " + email);
-        
-        Optional<User> userOpt = userRepository.findByEmail(email);
-        
-        if (userOpt.isPresent()) {
+        RequestProfile.enter(RequestProfile.Phase.AUTHENTICATION);
+        try {
+            // Never the password or other users: this runs on every login attempt, including failed ones
+            Optional<User> userOpt = userRepository.findByEmail(email);
+            if (!userOpt.isPresent()) {
+                log.debug("Login for unknown email {}", email);
+                throw new UsernameNotFoundException("User not found with email: " + email);
+            }
             User user = userOpt.get();
-            System.out.println("User found: " + user.getEmail());
-            System.out.println("User username field: " + user.getUsername());
-            System.out.println("User password (encoded): " + user.getPassword());
-            System.out.println("User roles: " + user.getRoles().stream().map(Role::getName).collect(Collectors.toList()));
-            System.out.println("User authorities: " + user.getAuthorities().stream().map(GrantedAuthority::getAuthority).collect(Collectors.toList()));
-            System.out.println("User enabled: " + user.isEnabled());
-            System.out.println("User account non-expired: " + user.isAccountNonExpired());
-            System.out.println("User account non-locked: " + user.isAccountNonLocked());
-            System.out.println("User credentials non-expired: " + user.isCredentialsNonExpired());
-            System.out.println("=== End Authentication Debug ===");
+            log.debug("Loaded user {} for login, enabled={}", user.getId(), user.isEnabled());
             return user;
-        } else {
-            System.out.println("User not found with email: " + email);
-            System.out.println("Available users in database:");
-            userRepository.findAll().forEach(u -> System.out.println("  - " + u.getEmail() + " (username: " + u.getUsername() + ")"));
-            System.out.println("=== End Authentication Debug ===");
-            throw new UsernameNotFoundException("User not found with email: " + email);
+        } finally {
+            RequestProfile.exit(RequestProfile.Phase.AUTHENTICATION);
         }
     }
 }
@@ -0,0 +1,5 @@
+-- Written behind by LoginActivityTracker, never through the entity
+alter table users add column last_login_at timestamp;
+alter table users add column login_count bigint default 0 not null;
+alter table users_archive add column last_login_at timestamp;
+alter table users_archive add column login_count bigint default 0 not null;
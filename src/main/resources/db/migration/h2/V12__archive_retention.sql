@@ -0,0 +1,2 @@
+-- The retention purge looks up archived users by archive time across all tenants
+create index idx_users_archive_archived_at on users_archive (archived_at);
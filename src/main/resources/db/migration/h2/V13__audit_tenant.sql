@@ -0,0 +1,8 @@
+-- Audit entries belong to the tenant the mutation happened in; existing entries go to the default tenant
+alter table audit_log add column tenant_id varchar(64) default 'default' not null;
+
+-- The audit pages are always read within one tenant, newest first, optionally by actor;
+-- the actor-only index has no query left
+create index idx_audit_log_tenant_id on audit_log (tenant_id, id);
+create index idx_audit_log_tenant_actor on audit_log (tenant_id, actor, id);
+drop index idx_audit_log_actor;
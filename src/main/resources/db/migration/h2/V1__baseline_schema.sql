@@ -0,0 +1,49 @@
+-- Schema as previously produced by hibernate.ddl-auto, H2 flavour.
+
+create table roles (
+    id          bigint generated by default as identity,
+    created_at  timestamp,
+    description varchar(255),
+    name        varchar(50) not null,
+    updated_at  timestamp,
+    primary key (id),
+    constraint uk_roles_name unique (name)
+);
+
+create table users (
+    id                 bigint generated by default as identity,
+    age                integer      not null,
+    created_at         timestamp,
+    email              varchar(100) not null,
+    first_name         varchar(50)  not null,
+    is_active          boolean      not null,
+    last_name          varchar(50)  not null,
+    password           varchar(255) not null,
+    photo              LONGBLOB,
+    photo_content_type varchar(255),
+    updated_at         timestamp,
+    username           varchar(100) not null,
+    primary key (id),
+    constraint uk_users_email unique (email),
+    constraint uk_users_username unique (username)
+);
+
+create table users_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id),
+    constraint fk_users_roles_user foreign key (user_id) references users (id),
+    constraint fk_users_roles_role foreign key (role_id) references roles (id)
+);
+
+create table audit_log (
+    id           bigint generated by default as identity,
+    action       varchar(50)  not null,
+    actor        varchar(100),
+    after_state  clob,
+    before_state clob,
+    occurred_at  timestamp    not null,
+    target_id    varchar(100),
+    target_type  varchar(50)  not null,
+    primary key (id)
+);
@@ -0,0 +1,13 @@
+-- Login looks users up by email, which uk_users_email already covers.
+
+-- Dashboard stats count active users; archival scans inactive users by last update.
+create index idx_users_is_active_updated_at on users (is_active, updated_at);
+
+-- Listing newest accounts first.
+create index idx_users_created_at on users (created_at);
+
+-- Reverse role membership (role -> users) without touching the users table.
+create index idx_users_roles_role_user on users_roles (role_id, user_id);
+
+-- Audit page filtered by actor, newest first.
+create index idx_audit_log_actor on audit_log (actor, id);
@@ -0,0 +1,3 @@
+-- Version counters for optimistic locking (@Version on User and Role)
+alter table users add column version bigint default 0 not null;
+alter table roles add column version bigint default 0 not null;
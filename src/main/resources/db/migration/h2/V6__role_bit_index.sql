@@ -0,0 +1,7 @@
+-- Dense per-role ordinal (0..63) so a user's roles fit in one long bit mask
+alter table roles add column bit_index int;
+
+update roles r set bit_index = (select count(*) from roles o where o.id < r.id);
+
+alter table roles alter column bit_index set not null;
+alter table roles add constraint uk_roles_bit_index unique (bit_index);
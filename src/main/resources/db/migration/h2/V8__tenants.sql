@@ -0,0 +1,14 @@
+-- Users and roles belong to a tenant; everything that existed before goes to the default tenant
+alter table users add column tenant_id varchar(64) default 'default' not null;
+alter table roles add column tenant_id varchar(64) default 'default' not null;
+
+-- Role names and bit indexes are only unique within a tenant
+alter table roles drop constraint uk_roles_name;
+alter table roles drop constraint uk_roles_bit_index;
+alter table roles add constraint uk_roles_tenant_name unique (tenant_id, name);
+alter table roles add constraint uk_roles_tenant_bit_index unique (tenant_id, bit_index);
+
+-- Every tenant-scoped query leads with tenant_id, so a large tenant's rows are never scanned for another
+create index idx_users_tenant_id on users (tenant_id, id);
+create index idx_users_tenant_active on users (tenant_id, is_active, updated_at);
+create index idx_users_tenant_created_at on users (tenant_id, created_at);
@@ -0,0 +1,5 @@
+-- Triggering and pausing maintenance jobs; existing ADMIN roles get it like every other permission
+insert into role_permissions (role_id, permission)
+select r.id, 'jobs:run'
+from roles r
+where r.name = 'ADMIN';
@@ -0,0 +1,50 @@
+-- Schema as previously produced by hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version and skip this script.
+
+create table roles (
+    id          bigint      not null auto_increment,
+    created_at  datetime(6),
+    description varchar(255),
+    name        varchar(50) not null,
+    updated_at  datetime(6),
+    primary key (id),
+    constraint uk_roles_name unique (name)
+) engine=InnoDB;
+
+create table users (
+    id                 bigint       not null auto_increment,
+    age                integer      not null,
+    created_at         datetime(6),
+    email              varchar(100) not null,
+    first_name         varchar(50)  not null,
+    is_active          bit          not null,
+    last_name          varchar(50)  not null,
+    password           varchar(255) not null,
+    photo              LONGBLOB,
+    photo_content_type varchar(255),
+    updated_at         datetime(6),
+    username           varchar(100) not null,
+    primary key (id),
+    constraint uk_users_email unique (email),
+    constraint uk_users_username unique (username)
+) engine=InnoDB;
+
+create table users_roles (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id),
+    constraint fk_users_roles_user foreign key (user_id) references users (id),
+    constraint fk_users_roles_role foreign key (role_id) references roles (id)
+) engine=InnoDB;
+
+create table audit_log (
+    id           bigint       not null auto_increment,
+    action       varchar(50)  not null,
+    actor        varchar(100),
+    after_state  longtext,
+    before_state longtext,
+    occurred_at  datetime(6)  not null,
+    target_id    varchar(100),
+    target_type  varchar(50)  not null,
+    primary key (id)
+) engine=InnoDB;
@@ -0,0 +1,8 @@
+-- Single-row heartbeat written on the primary and read back from replicas to measure lag
+create table replication_heartbeat (
+    id int not null,
+    beat_at bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+insert into replication_heartbeat (id, beat_at) values (1, 0);
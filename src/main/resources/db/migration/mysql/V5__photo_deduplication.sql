@@ -0,0 +1,23 @@
+-- Photos are stored once per SHA-256 digest and shared by reference-counted users.photo_digest pointers
+create table photos (
+    digest       varchar(64)  not null,
+    content      longblob     not null,
+    content_type varchar(50)  not null,
+    size_bytes   bigint       not null,
+    ref_count    int          not null,
+    created_at   datetime(6),
+    primary key (digest)
+) engine=InnoDB;
+
+alter table users add column photo_digest varchar(64);
+
+update users set photo_digest = sha2(photo, 256) where photo is not null;
+
+insert into photos (digest, content, content_type, size_bytes, ref_count, created_at)
+select u.photo_digest, u.photo, coalesce(u.photo_content_type, 'image/jpeg'), length(u.photo), c.refs, now(6)
+from users u
+join (select photo_digest, min(id) as first_id, count(*) as refs
+      from users where photo_digest is not null group by photo_digest) c on u.id = c.first_id;
+
+alter table users add constraint fk_users_photo foreign key (photo_digest) references photos (digest);
+alter table users drop column photo;
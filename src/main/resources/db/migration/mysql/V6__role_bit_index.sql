@@ -0,0 +1,9 @@
+-- Dense per-role ordinal (0..63) so a user's roles fit in one long bit mask
+alter table roles add column bit_index int;
+
+update roles r
+join (select id, (select count(*) from roles o where o.id < x.id) as n from roles x) numbered on numbered.id = r.id
+set r.bit_index = numbered.n;
+
+alter table roles modify bit_index int not null;
+alter table roles add constraint uk_roles_bit_index unique (bit_index);
@@ -0,0 +1,21 @@
+-- Per-operation permissions granted to roles; existing ADMIN roles get all of them
+create table role_permissions (
+    role_id    bigint      not null,
+    permission varchar(64) not null,
+    primary key (role_id, permission),
+    constraint fk_role_permissions_role foreign key (role_id) references roles (id)
+) engine=InnoDB;
+
+insert into role_permissions (role_id, permission)
+select r.id, p.code
+from roles r
+cross join (select 'users:read' as code
+            union all select 'users:create'
+            union all select 'users:update'
+            union all select 'users:delete'
+            union all select 'users:disable'
+            union all select 'roles:write'
+            union all select 'photos:read:any'
+            union all select 'audit:read'
+            union all select 'diagnostics:read') p
+where r.name = 'ADMIN';
@@ -0,0 +1,34 @@
+-- Deleted accounts are only marked; the archival job moves them out of users on its next run
+alter table users add column deleted_at datetime(6);
+create index idx_users_deleted_at on users (deleted_at);
+
+-- Cold storage for deleted and long-inactive accounts. Without unique keys an archived email can be
+-- taken again; the photo foreign key keeps the archived account's photo reference alive for a restore.
+create table users_archive (
+    id                 bigint       not null,
+    tenant_id          varchar(64)  not null,
+    username           varchar(100) not null,
+    email              varchar(100) not null,
+    first_name         varchar(50)  not null,
+    last_name          varchar(50)  not null,
+    age                integer      not null,
+    password           varchar(255) not null,
+    photo_digest       varchar(64),
+    photo_content_type varchar(255),
+    is_active          bit          not null,
+    created_at         datetime(6),
+    updated_at         datetime(6),
+    deleted_at         datetime(6),
+    version            bigint       not null,
+    archived_at        datetime(6)  not null,
+    primary key (id),
+    constraint fk_users_archive_photo foreign key (photo_digest) references photos (digest)
+) engine=InnoDB;
+create index idx_users_archive_tenant on users_archive (tenant_id, archived_at);
+
+-- Role links of archived accounts; links to roles deleted meanwhile are dropped on restore
+create table users_roles_archive (
+    user_id bigint not null,
+    role_id bigint not null,
+    primary key (user_id, role_id)
+) engine=InnoDB;
@@ -383,12 +383,14 @@ class AdminDashboard {
             roleIds: roleIds
         };
         console.log('Edit user payload:', userData);
+        const editedUser = this.users.find(u => u.id === userId);
 
         try {
             const response = await fetch(`/api/admin/users/${userId}`, {
                 method: 'PUT',
                 headers: {
                     'Content-Type': 'application/json',
+                    'If-Match': `"${editedUser ? editedUser.version : ''}"`
                 },
                 body: JSON.stringify(userData)
             });
@@ -16,12 +16,13 @@ class ApiClient {
      */
     async request(endpoint, options = {}) {
         const url = `${this.baseUrl}${endpoint}`;
+        // options first so its headers cannot replace the merged defaults
         const config = {
+            ...options,
             headers: {
                 ...this.defaultHeaders,
                 ...options.headers
-            },
-            ...options
+            }
         };
 
         try {
@@ -61,9 +62,10 @@ class ApiClient {
         });
     }
 
-    async updateUser(id, userData) {
+    async updateUser(id, userData, version) {
         return this.request(`/api/users/${id}`, {
             method: 'PUT',
+            headers: { 'If-Match': `"${version}"` },
             body: JSON.stringify(userData)
         });
     }
@@ -92,9 +94,10 @@ class ApiClient {
         });
     }
 
-    async updateRole(id, roleData) {
+    async updateRole(id, roleData, version) {
         return this.request(`/api/roles/${id}`, {
             method: 'PUT',
+            headers: { 'If-Match': `"${version}"` },
             body: JSON.stringify(roleData)
         });
     }
@@ -34,9 +34,9 @@ class RoleManager {
         }
     }
 
-    async updateRole(id, roleData) {
+    async updateRole(id, roleData, version) {
         try {
-            const response = await apiClient.updateRole(id, roleData);
+            const response = await apiClient.updateRole(id, roleData, version);
             this.showNotification('Role updated successfully!', 'success');
             await this.loadRoles();
             this.resetRoleForm();
@@ -139,7 +139,7 @@ class RoleManager {
 
         try {
             if (this.currentRole) {
-                await this.updateRole(this.currentRole.id, roleData);
+                await this.updateRole(this.currentRole.id, roleData, this.currentRole.version);
             } else {
                 await this.createRole(roleData);
             }
@@ -308,7 +308,7 @@ class UserManager {
         const userData = this.prepareUserData(formData);
 
         try {
-            const response = await apiClient.updateUser(this.currentUser.id, userData);
+            const response = await apiClient.updateUser(this.currentUser.id, userData, this.currentUser.version);
             
             if (response.success) {
                 UIHelper.showSuccess('User updated successfully');
@@ -169,6 +169,7 @@ class UserSettings {
                 method: 'PUT',
                 headers: {
                     'Content-Type': 'application/json',
+                    'If-Match': `"${this.currentUser.version}"`
                 },
                 body: JSON.stringify(userData)
             });
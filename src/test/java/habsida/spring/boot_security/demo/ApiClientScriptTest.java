@@ -0,0 +1,125 @@
+package habsida.spring.boot_security.demo;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpMethod;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.request;
+
+/**
+ * Runs static/js/api.js under Node with a recording fetch, then replays the request it
+ * built against the application, so header handling in the UI client is covered end to end.
+ * Skipped when node is not on the PATH.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ApiClientScriptTest {
+
+    private static final String SCRIPT = "src/main/resources/static/js/api.js";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    public void editThroughTheUiClientSucceeds() throws Exception {
+        Role userRole = roleRepository.findByName("USER").orElseThrow(IllegalStateException::new);
+        User target = new User();
+        target.setUsername("ui-edit@example.com");
+        target.setEmail("ui-edit@example.com");
+        target.setFirstName("Before");
+        target.setLastName("Edit");
+        target.setAge(30);
+        target.setPassword("encoded-password");
+        target.setActive(true);
+        target.setRoles(Collections.singleton(userRole));
+        target = userRepository.save(target);
+
+        String userData = "{\"username\":\"ui-edit@example.com\",\"firstName\":\"After\",\"lastName\":\"Edit\","
+                + "\"age\":31,\"email\":\"ui-edit@example.com\",\"roleIds\":[" + userRole.getId() + "]}";
+        JsonNode sent = recordRequest("updateUser(" + target.getId() + ", " + userData + ", " + target.getVersion() + ")");
+
+        assertEquals("application/json", sent.path("headers").path("Content-Type").asText());
+        assertEquals("\"" + target.getVersion() + "\"", sent.path("headers").path("If-Match").asText());
+
+        MockHttpServletRequestBuilder replay = request(HttpMethod.valueOf(sent.path("method").asText()),
+                sent.path("url").asText())
+                .with(user("admin@gmail.com").roles("ADMIN"))
+                .content(sent.path("body").asText());
+        for (Iterator<Map.Entry<String, JsonNode>> it = sent.path("headers").fields(); it.hasNext(); ) {
+            Map.Entry<String, JsonNode> header = it.next();
+            replay.header(header.getKey(), header.getValue().asText());
+        }
+        int status = mockMvc.perform(replay).andReturn().getResponse().getStatus();
+
+        assertEquals(200, status);
+        assertEquals("After", userRepository.findById(target.getId()).orElseThrow(IllegalStateException::new).getFirstName());
+    }
+
+    /**
+     * Calls the given ApiClient method and returns the url and fetch options it produced.
+     */
+    private JsonNode recordRequest(String call) throws Exception {
+        String program = "let sent;"
+                + "global.fetch = async (url, config) => { sent = { url, ...config };"
+                + " return { ok: true, json: async () => ({}) }; };"
+                + "console.log = () => {};"
+                + "const { ApiClient } = require(process.argv[1]);"
+                + "new ApiClient()." + call + ".then(() => process.stdout.write(JSON.stringify(sent)));";
+        Process node;
+        try {
+            node = new ProcessBuilder("node", "-e", program, new File(SCRIPT).getAbsolutePath())
+                    .redirectErrorStream(true)
+                    .start();
+        } catch (IOException e) {
+            assumeTrue(false, "node is not installed");
+            throw e;
+        }
+        assertTrue(node.waitFor(30, TimeUnit.SECONDS), "node did not finish");
+        String output = read(node.getInputStream());
+        assertEquals(0, node.exitValue(), output);
+        return objectMapper.readTree(output);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package habsida.spring.boot_security.demo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.service.AuditLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class AuditLogTest {
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void recordedEventsReachTheAuditTable() throws Exception {
+        UserDto after = new UserDto();
+        after.setEmail("audited@example.com");
+        after.setPassword("secret-password");
+        auditLog.record("CREATE", "USER", "audit-test-1", null, after);
+
+        Map<String, Object> row = awaitRow("audit-test-1");
+        assertEquals("CREATE", row.get("action"));
+        assertEquals("USER", row.get("target_type"));
+        assertNull(row.get("before_state"));
+        String json = String.valueOf(row.get("after_state"));
+        assertTrue(json.contains("audited@example.com"), json);
+        assertFalse(json.contains("secret-password"), json);
+    }
+
+    @Test
+    public void fullBufferDropsAndCountsWithoutBlocking() {
+        // Never started, so nothing drains the buffer
+        AuditLog stopped = new AuditLog(null, new ObjectMapper(), 4, 256, 200, AuditLog.OverflowPolicy.DROP, 5);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            stopped.record("UPDATE", "USER", i, null, null);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+        Map<String, Object> stats = stopped.stats();
+        assertEquals(4L, stats.get("published"));
+        assertEquals(6L, stats.get("dropped"));
+        assertEquals(4, stats.get("pending"));
+    }
+
+    @Test
+    public void waitPolicyGivesUpAfterTheTimeout() {
+        AuditLog stopped = new AuditLog(null, new ObjectMapper(), 4, 256, 200, AuditLog.OverflowPolicy.WAIT, 20);
+        for (int i = 0; i < 4; i++) {
+            stopped.record("UPDATE", "USER", i, null, null);
+        }
+
+        long start = System.nanoTime();
+        stopped.record("UPDATE", "USER", 4, null, null);
+        long waited = System.nanoTime() - start;
+
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(20), "waited " + waited);
+        assertTrue(waited < TimeUnit.SECONDS.toNanos(1), "waited " + waited);
+        assertEquals(1L, stopped.stats().get("dropped"));
+    }
+
+    @Test
+    public void concurrentProducersNeverLoseCount() throws Exception {
+        AuditLog stopped = new AuditLog(null, new ObjectMapper(), 1024, 4096, 200, AuditLog.OverflowPolicy.DROP, 5);
+        int producers = 8;
+        int perProducer = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    stopped.record("UPDATE", "USER", i, null, null);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        Map<String, Object> stats = stopped.stats();
+        assertEquals(1024L, stats.get("published"));
+        assertEquals((long) producers * perProducer - 1024, stats.get("dropped"));
+        assertEquals(1024, stats.get("pending"));
+    }
+
+    private Map<String, Object> awaitRow(String targetId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT action, target_type, before_state, after_state FROM audit_log WHERE target_id = ?", targetId);
+            if (!rows.isEmpty()) {
+                return rows.get(0);
+            }
+            Thread.sleep(50);
+        }
+        fail("Audit entry for " + targetId + " was not written");
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.service.JobScheduler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class JobSchedulerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobScheduler jobScheduler;
+
+    @Test
+    public void triggeredRunDeletesOrphanedPhotosAndIsRecorded() throws Exception {
+        jdbcTemplate.update("INSERT INTO photos (digest, content, content_type, size_bytes, ref_count, created_at) "
+                + "VALUES ('orphan', X'00', 'image/png', 1, 1, DATEADD('DAY', -1, CURRENT_TIMESTAMP))");
+
+        assertEquals(202, post("/api/admin/jobs/orphan-photo-cleanup/run", "ADMIN"));
+        Map<?, ?> run = awaitRun("orphan-photo-cleanup");
+        assertEquals(JobScheduler.Outcome.SUCCEEDED, ((JobScheduler.Run) run.get("lastRun")).getOutcome());
+        assertEquals(0, (int) jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM photos WHERE digest = 'orphan'", Integer.class));
+
+        assertEquals(403, post("/api/admin/jobs/orphan-photo-cleanup/run", "USER"));
+        assertEquals(404, post("/api/admin/jobs/no-such-job/run", "ADMIN"));
+    }
+
+    @Test
+    public void pausedJobIsReportedAsPaused() throws Exception {
+        assertEquals(200, post("/api/admin/jobs/user-archival/pause", "ADMIN"));
+        assertEquals(true, jobScheduler.describe("user-archival").get("paused"));
+        assertEquals(200, post("/api/admin/jobs/user-archival/resume", "ADMIN"));
+        assertEquals(false, jobScheduler.describe("user-archival").get("paused"));
+    }
+
+    private Map<?, ?> awaitRun(String name) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            Map<String, Object> job = jobScheduler.describe(name);
+            if (!((List<?>) job.get("history")).isEmpty() && (Integer) job.get("running") == 0) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        return fail("Job " + name + " did not complete");
+    }
+
+    private int post(String path, String role) throws Exception {
+        return mockMvc.perform(MockMvcRequestBuilders.post(path)
+                        .with(user(role.toLowerCase() + "@gmail.com").roles(role)))
+                .andReturn().getResponse().getStatus();
+    }
+}
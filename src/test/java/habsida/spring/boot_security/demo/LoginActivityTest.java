@@ -0,0 +1,75 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.service.LoginActivityTracker;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class LoginActivityTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LoginActivityTracker loginActivityTracker;
+
+    @Test
+    public void loginsAreCoalescedAndWrittenOnFlush() throws Exception {
+        loginActivityTracker.flush();
+        long before = loginCount();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(302, mockMvc.perform(formLogin("/login").user("user@gmail.com").password("user"))
+                    .andReturn().getResponse().getStatus());
+        }
+        // Nothing is written on the login path
+        assertEquals(before, loginCount());
+
+        assertEquals(1, loginActivityTracker.flush());
+        assertEquals(before + 3, loginCount());
+        assertNotNull(jdbcTemplate.queryForObject(
+                "SELECT last_login_at FROM users WHERE email = 'user@gmail.com'", Timestamp.class));
+    }
+
+    @Test
+    public void failedFlushWritesNothingSoRetriesCountOnce() {
+        loginActivityTracker.flush();
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'user@gmail.com'", Long.class);
+        Long adminId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'admin@gmail.com'", Long.class);
+        long adminCount = jdbcTemplate.queryForObject("SELECT login_count FROM users WHERE id = ?", Long.class, adminId);
+        long before = loginCount();
+
+        // The admin's row overflows, whichever position it has in the batch
+        jdbcTemplate.update("UPDATE users SET login_count = ? WHERE id = ?", Long.MAX_VALUE, adminId);
+        try {
+            loginActivityTracker.recordLogin(userId);
+            loginActivityTracker.recordLogin(adminId);
+            assertThrows(RuntimeException.class, loginActivityTracker::flush);
+            assertEquals(before, loginCount());
+        } finally {
+            jdbcTemplate.update("UPDATE users SET login_count = ? WHERE id = ?", adminCount, adminId);
+        }
+
+        loginActivityTracker.flush();
+        assertEquals(before + 1, loginCount());
+    }
+
+    private long loginCount() {
+        return jdbcTemplate.queryForObject("SELECT login_count FROM users WHERE email = 'user@gmail.com'", Long.class);
+    }
+}
@@ -0,0 +1,67 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.LoginThrottle;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginThrottleTest {
+
+    @Test
+    public void burstIsAllowedThenRefillsOneTokenPerInterval() throws Exception {
+        LoginThrottle throttle = new LoginThrottle(3, 1, 100, 1, 100);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, throttle.tryAcquire("burst@example.com", null));
+        }
+        assertEquals(1, throttle.tryAcquire("burst@example.com", null));
+
+        Thread.sleep(1100);
+        assertEquals(0, throttle.tryAcquire("burst@example.com", null));
+        assertEquals(1, throttle.tryAcquire("burst@example.com", null));
+    }
+
+    @Test
+    public void retryAfterFollowsTheConfiguredRefill() {
+        LoginThrottle throttle = new LoginThrottle(1, 90, 100, 1, 100);
+
+        assertEquals(0, throttle.tryAcquire("slow@example.com", "10.0.0.1"));
+        assertEquals(90, throttle.tryAcquire("slow@example.com", "10.0.0.1"));
+    }
+
+    @Test
+    public void ipLimitAppliesAcrossEmails() {
+        LoginThrottle throttle = new LoginThrottle(100, 60, 2, 30, 100);
+
+        assertEquals(0, throttle.tryAcquire("a@example.com", "10.0.0.1"));
+        assertEquals(0, throttle.tryAcquire("b@example.com", "10.0.0.1"));
+        assertEquals(30, throttle.tryAcquire("c@example.com", "10.0.0.1"));
+        assertEquals(0, throttle.tryAcquire("c@example.com", "10.0.0.2"));
+    }
+
+    @Test
+    public void successfulLoginResetsTheEmailBucket() {
+        LoginThrottle throttle = new LoginThrottle(1, 60, 100, 1, 100);
+
+        assertEquals(0, throttle.tryAcquire("Reset@Example.com", null));
+        assertTrue(throttle.tryAcquire("reset@example.com", null) > 0);
+
+        throttle.reset(" RESET@example.com ");
+        assertEquals(0, throttle.tryAcquire("reset@example.com", null));
+    }
+
+    @Test
+    public void fullTableLetsNewKeysThroughAndKeepsThrottlingKnownOnes() {
+        LoginThrottle throttle = new LoginThrottle(1, 60, 100, 1, 2);
+
+        assertEquals(0, throttle.tryAcquire("first@example.com", null));
+        assertEquals(0, throttle.tryAcquire("second@example.com", null));
+
+        // Both buckets are still active, so there is no room to track a third email
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, throttle.tryAcquire("legitimate@example.com", null));
+        }
+        assertTrue(throttle.tryAcquire("first@example.com", null) > 0);
+        assertTrue(throttle.tryAcquire("second@example.com", null) > 0);
+    }
+}
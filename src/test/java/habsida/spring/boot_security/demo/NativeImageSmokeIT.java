@@ -0,0 +1,114 @@
+package habsida.spring.boot_security.demo;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.CookieHandler;
+import java.net.CookieManager;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Starts the native executable built by the native profile against an in-memory H2 database and
+ * checks that the login page renders, form login works and the admin API serializes users.
+ * Runs under failsafe with {@code mvn -Pnative verify}; skipped when no executable was built.
+ */
+public class NativeImageSmokeIT {
+
+    private static final Logger log = LoggerFactory.getLogger(NativeImageSmokeIT.class);
+
+    private Process application;
+
+    @AfterEach
+    public void stopApplication() {
+        if (application != null) {
+            application.destroy();
+        }
+    }
+
+    @Test
+    public void nativeExecutableServesLoginAndAdminApi() throws Exception {
+        File executable = new File(System.getProperty("native.image.path", "target/spring-boot-security-demo"));
+        assumeTrue(executable.canExecute(), "No native executable at " + executable);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        long start = System.nanoTime();
+        application = new ProcessBuilder(executable.getAbsolutePath(),
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:smoke;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=none")
+                .redirectErrorStream(true)
+                .redirectOutput(new File(executable.getParentFile(), "native-smoke.log"))
+                .start();
+
+        String base = "http://localhost:" + port;
+        int loginStatus = awaitStatus(base + "/login", TimeUnit.SECONDS.toNanos(30));
+        log.info("Native executable answered its first request after {} ms",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        assertEquals(200, loginStatus);
+
+        CookieHandler.setDefault(new CookieManager());
+        HttpURLConnection login = (HttpURLConnection) new URL(base + "/login").openConnection();
+        login.setInstanceFollowRedirects(false);
+        login.setRequestMethod("POST");
+        login.setDoOutput(true);
+        login.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        try (OutputStream out = login.getOutputStream()) {
+            out.write("username=admin%40gmail.com&password=admin".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(302, login.getResponseCode());
+        assertFalse(login.getHeaderField("Location").contains("error"));
+
+        HttpURLConnection users = (HttpURLConnection) new URL(base + "/api/admin/users").openConnection();
+        assertEquals(200, users.getResponseCode());
+        String body = read(users.getInputStream());
+        assertTrue(body.contains("\"success\":true"));
+        assertTrue(body.contains("admin@gmail.com"));
+    }
+
+    private int awaitStatus(String url, long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (System.nanoTime() - deadline < 0) {
+            assertTrue(application.isAlive(), "Native executable exited, see native-smoke.log");
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+                return connection.getResponseCode();
+            } catch (IOException e) {
+                Thread.sleep(10);
+            }
+        }
+        return fail("Native executable did not answer within the timeout");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class OptimisticLockingTest {
+
+    private static final int WRITERS = 8;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Test
+    public void concurrentUpdatesWithSameVersionHaveExactlyOneWinner() throws Exception {
+        Role userRole = roleRepository.findByName("USER").orElseThrow(IllegalStateException::new);
+        User target = new User();
+        target.setUsername("contended@example.com");
+        target.setEmail("contended@example.com");
+        target.setFirstName("Before");
+        target.setLastName("Update");
+        target.setAge(30);
+        target.setPassword("encoded-password");
+        target.setActive(true);
+        target.setRoles(Collections.singleton(userRole));
+        target = userRepository.save(target);
+        Long id = target.getId();
+        Long version = target.getVersion();
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            String body = "{\"firstName\":\"Writer" + i + "\",\"lastName\":\"Update\",\"age\":31,"
+                    + "\"email\":\"contended@example.com\",\"roleIds\":[" + userRole.getId() + "]}";
+            results.add(pool.submit(() -> {
+                start.await();
+                return mockMvc.perform(put("/api/admin/users/" + id)
+                                .with(user("admin@gmail.com").roles("ADMIN"))
+                                .header("If-Match", "\"" + version + "\"")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(body))
+                        .andReturn().getResponse().getStatus();
+            }));
+        }
+        start.countDown();
+
+        int succeeded = 0;
+        int rejected = 0;
+        for (Future<Integer> result : results) {
+            int status = result.get(30, TimeUnit.SECONDS);
+            if (status == 200) {
+                succeeded++;
+            } else if (status == 412) {
+                rejected++;
+            } else {
+                fail("Unexpected status " + status);
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(1, succeeded);
+        assertEquals(WRITERS - 1, rejected);
+        assertEquals(version + 1, userRepository.findById(id).orElseThrow(IllegalStateException::new).getVersion());
+    }
+
+    @Test
+    public void updateWithoutIfMatchIsRejected() throws Exception {
+        int status = mockMvc.perform(put("/api/admin/users/1")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andReturn().getResponse().getStatus();
+        assertEquals(428, status);
+    }
+}
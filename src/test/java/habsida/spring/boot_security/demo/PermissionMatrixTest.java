@@ -0,0 +1,112 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class PermissionMatrixTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    public void revokingAPermissionTakesEffectOnTheNextRequest() throws Exception {
+        Long userId = userRepository.findByEmail("user@gmail.com").orElseThrow(IllegalStateException::new).getId();
+        assertEquals(200, asAdmin("/api/admin/users/" + userId + "/enable"));
+
+        List<String> withoutDisable = new ArrayList<>();
+        for (Permission permission : Permission.values()) {
+            if (permission != Permission.USERS_DISABLE) {
+                withoutDisable.add(permission.getCode());
+            }
+        }
+        assertEquals(200, updateAdminPermissions(withoutDisable));
+        try {
+            assertEquals(403, asAdmin("/api/admin/users/" + userId + "/disable"));
+            assertEquals(403, asAdmin("/api/admin/users/" + userId + "/enable"));
+        } finally {
+            withoutDisable.add(Permission.USERS_DISABLE.getCode());
+            assertEquals(200, updateAdminPermissions(withoutDisable));
+        }
+        assertEquals(200, asAdmin("/api/admin/users/" + userId + "/enable"));
+    }
+
+    @Test
+    public void rolesCannotBeWrittenWithoutPermission() throws Exception {
+        int status = mockMvc.perform(post("/api/roles")
+                        .with(user("user@gmail.com").roles("USER"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"SNEAKY\"}"))
+                .andReturn().getResponse().getStatus();
+        assertEquals(403, status);
+        assertFalse(roleRepository.findByName("SNEAKY").isPresent());
+    }
+
+    @Test
+    public void userEndpointsCheckTheSamePermissionsAsTheAdminApi() throws Exception {
+        Long adminId = userRepository.findByEmail("admin@gmail.com").orElseThrow(IllegalStateException::new).getId();
+        String adminJson = "{\"username\":\"admin@gmail.com\",\"firstName\":\"Taken\",\"lastName\":\"Over\",\"age\":30,"
+                + "\"email\":\"admin@gmail.com\",\"password\":\"secret1\"}";
+
+        assertEquals(403, asUser(put("/api/users/" + adminId + "/disable")));
+        assertEquals(403, asUser(put("/api/users/" + adminId + "/enable")));
+        assertEquals(403, asUser(delete("/api/users/" + adminId)));
+        assertEquals(403, asUser(put("/api/users/" + adminId)
+                .header("If-Match", "\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(adminJson)));
+        assertEquals(403, asUser(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(adminJson.replace("admin@gmail.com", "sneaky@example.com"))));
+
+        assertTrue(userRepository.findById(adminId).orElseThrow(IllegalStateException::new).isEnabled());
+        assertFalse(userRepository.findByEmail("sneaky@example.com").isPresent());
+    }
+
+    private int asUser(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.with(user("user@gmail.com").roles("USER")))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private int asAdmin(String path) throws Exception {
+        return mockMvc.perform(put(path).with(user("admin@gmail.com").roles("ADMIN")))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private int updateAdminPermissions(List<String> codes) throws Exception {
+        Role admin = roleRepository.findByName("ADMIN").orElseThrow(IllegalStateException::new);
+        return mockMvc.perform(put("/api/roles/" + admin.getId())
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .header("If-Match", "\"" + admin.getVersion() + "\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"ADMIN\",\"permissions\":[\"" + String.join("\",\"", codes) + "\"]}"))
+                .andReturn().getResponse().getStatus();
+    }
+}
@@ -0,0 +1,139 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.service.PhotoCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+
+@SpringBootTest(properties = "app.photo.max-size=4KB")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class PhotoUploadTest {
+
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13};
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PhotoCache photoCache;
+
+    @Test
+    public void storesImageWithTypeDetectedFromContent() throws Exception {
+        byte[] png = Arrays.copyOf(PNG_HEADER, 2048);
+        png[100] = 1;
+        // The declared type is ignored in favour of the magic bytes
+        assertEquals(200, upload("user@gmail.com", new MockMultipartFile("photo", "avatar.jpg", "image/jpeg", png)));
+
+        assertEquals("image/png", jdbcTemplate.queryForObject(
+                "SELECT photo_content_type FROM users WHERE email = 'user@gmail.com'", String.class));
+        assertArrayEquals(png, jdbcTemplate.queryForObject("SELECT p.content FROM photos p "
+                + "JOIN users u ON u.photo_digest = p.digest WHERE u.email = 'user@gmail.com'", byte[].class));
+    }
+
+    @Test
+    public void storesIdenticalPhotosOnceAndDeletesThemWithTheLastReference() throws Exception {
+        byte[] png = Arrays.copyOf(PNG_HEADER, 1024);
+        png[200] = 2;
+        assertEquals(200, upload("admin@gmail.com", new MockMultipartFile("photo", "a.png", "image/png", png)));
+        assertEquals(200, upload("user@gmail.com", new MockMultipartFile("photo", "b.png", "image/png", png)));
+
+        String digest = jdbcTemplate.queryForObject(
+                "SELECT photo_digest FROM users WHERE email = 'admin@gmail.com'", String.class);
+        assertEquals(digest, jdbcTemplate.queryForObject(
+                "SELECT photo_digest FROM users WHERE email = 'user@gmail.com'", String.class));
+        assertEquals(2, refCount(digest));
+
+        assertEquals(200, deletePhoto("admin@gmail.com"));
+        assertEquals(1, refCount(digest));
+        assertEquals(200, deletePhoto("user@gmail.com"));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM photos WHERE digest = ?", Integer.class, digest));
+    }
+
+    @Test
+    public void servesRepeatedReadsFromTheCacheUntilThePhotoChanges() throws Exception {
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'user@gmail.com'", Long.class);
+        byte[] first = Arrays.copyOf(PNG_HEADER, 512);
+        first[300] = 3;
+        byte[] second = Arrays.copyOf(PNG_HEADER, 768);
+        second[300] = 4;
+
+        assertEquals(200, upload("user@gmail.com", new MockMultipartFile("photo", "a.png", "image/png", first)));
+        assertArrayEquals(first, photoOf(userId));
+        long hits = (Long) photoCache.stats().get("hits");
+        assertArrayEquals(first, photoOf(userId));
+        assertEquals(hits + 1, photoCache.stats().get("hits"));
+
+        assertEquals(200, upload("user@gmail.com", new MockMultipartFile("photo", "b.png", "image/png", second)));
+        assertArrayEquals(second, photoOf(userId));
+    }
+
+    @Test
+    public void photoCachedFromALaggingReplicaIsNotServed() throws Exception {
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'user@gmail.com'", Long.class);
+        byte[] old = Arrays.copyOf(PNG_HEADER, 512);
+        old[300] = 5;
+        byte[] current = Arrays.copyOf(PNG_HEADER, 640);
+        current[300] = 6;
+
+        assertEquals(200, upload("user@gmail.com", new MockMultipartFile("photo", "a.png", "image/png", old)));
+        Long oldVersion = jdbcTemplate.queryForObject("SELECT version FROM users WHERE id = ?", Long.class, userId);
+        assertEquals(200, upload("user@gmail.com", new MockMultipartFile("photo", "b.png", "image/png", current)));
+
+        // A read that started after the invalidation but still saw the old row on the replica
+        photoCache.put(TenantContext.DEFAULT_TENANT, userId, oldVersion, "image/png", old, photoCache.generation());
+
+        long stale = (Long) photoCache.stats().get("stale");
+        assertArrayEquals(current, photoOf(userId));
+        assertEquals(stale + 1, photoCache.stats().get("stale"));
+    }
+
+    @Test
+    public void rejectsContentThatIsNotAnImage() throws Exception {
+        byte[] script = "<script>alert(1)</script>".getBytes();
+        assertEquals(400, upload("user@gmail.com", new MockMultipartFile("photo", "avatar.png", "image/png", script)));
+    }
+
+    @Test
+    public void rejectsImagesOverTheSizeLimitWhileStreaming() throws Exception {
+        byte[] png = Arrays.copyOf(PNG_HEADER, 4 * 1024 + 1);
+        assertEquals(413, upload("user@gmail.com", new MockMultipartFile("photo", "avatar.png", "image/png", png)));
+    }
+
+    private int refCount(String digest) {
+        return jdbcTemplate.queryForObject("SELECT ref_count FROM photos WHERE digest = ?", Integer.class, digest);
+    }
+
+    private int upload(String email, MockMultipartFile file) throws Exception {
+        return mockMvc.perform(multipart("/api/photo/upload").file(file).with(user(email).roles("USER")))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private byte[] photoOf(Long userId) throws Exception {
+        return mockMvc.perform(get("/api/photo/user/" + userId).with(user("admin@gmail.com").roles("ADMIN")))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private int deletePhoto(String email) throws Exception {
+        return mockMvc.perform(delete("/api/photo/current").with(user(email).roles("USER")))
+                .andReturn().getResponse().getStatus();
+    }
+}
@@ -0,0 +1,74 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.ReplicaLagMonitor;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Primary and replica are two separate H2 databases, so nothing the application writes
+ * reaches the replica; which one answered is visible from the data.
+ */
+@SpringBootTest
+@ActiveProfiles({"test", "replica"})
+public class ReadReplicaRoutingTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ReplicaLagMonitor replicaLagMonitor;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    @AfterEach
+    public void freshHeartbeat() {
+        new JdbcTemplate(replicaDataSource).update(
+                "UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", System.currentTimeMillis());
+        replicaLagMonitor.check();
+    }
+
+    @Test
+    public void readOnlyServiceMethodsUseTheReplicaAndWritesThePrimary() {
+        freshHeartbeat();
+        assertTrue(replicaLagMonitor.isReplicaUsable());
+
+        long primaryUsers = new JdbcTemplate(primaryDataSource).queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        assertTrue(primaryUsers > 0, "seed data is written to the primary");
+        assertEquals(0, userService.countUsers(), "read-only count is answered by the empty replica");
+        assertFalse(userService.findByEmail("admin@gmail.com").isPresent());
+
+        // Non-read-only work still sees the primary
+        User admin = (User) ((UserDetailsService) userService).loadUserByUsername("admin@gmail.com");
+        assertEquals("admin@gmail.com", admin.getEmail());
+    }
+
+    @Test
+    public void laggingReplicaFallsBackToThePrimary() {
+        new JdbcTemplate(replicaDataSource).update(
+                "UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", System.currentTimeMillis() - 60_000);
+        replicaLagMonitor.check();
+
+        assertFalse(replicaLagMonitor.isReplicaUsable());
+        assertTrue(replicaLagMonitor.getLagMillis() >= 60_000);
+        long primaryUsers = new JdbcTemplate(primaryDataSource).queryForObject("SELECT COUNT(*) FROM users", Long.class);
+        assertEquals(primaryUsers, userService.countUsers());
+    }
+}
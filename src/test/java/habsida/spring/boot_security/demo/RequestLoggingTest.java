@@ -0,0 +1,63 @@
+package habsida.spring.boot_security.demo;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import habsida.spring.boot_security.demo.configs.CorrelationIdFilter;
+import habsida.spring.boot_security.demo.configs.DebugSamplingTurboFilter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class RequestLoggingTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void requestsGetACorrelationIdAndKeepAWellFormedOne() throws Exception {
+        String generated = mockMvc.perform(get("/login")).andReturn().getResponse().getHeader(CorrelationIdFilter.HEADER);
+        assertNotNull(generated);
+        assertEquals(32, generated.length());
+
+        assertEquals("edge-42", mockMvc.perform(get("/login").header(CorrelationIdFilter.HEADER, "edge-42"))
+                .andReturn().getResponse().getHeader(CorrelationIdFilter.HEADER));
+        String replaced = mockMvc.perform(get("/login").header(CorrelationIdFilter.HEADER, "bad id\n{}"))
+                .andReturn().getResponse().getHeader(CorrelationIdFilter.HEADER);
+        assertNotEquals("bad id\n{}", replaced);
+    }
+
+    @Test
+    public void debugEventsOfSampledLoggersAreCappedPerSecond() {
+        LoggerContext context = new LoggerContext();
+        Logger security = context.getLogger("org.springframework.security.web.FilterChainProxy");
+        Logger other = context.getLogger("org.hibernate.SQL");
+        DebugSamplingTurboFilter filter = new DebugSamplingTurboFilter();
+        filter.addLoggerPrefix("org.springframework.security");
+        filter.setMaxPerSecond(3);
+        filter.start();
+
+        int passed = 0;
+        for (int i = 0; i < 100; i++) {
+            if (filter.decide(null, security, Level.DEBUG, "Securing {}", null, null) == FilterReply.NEUTRAL) {
+                passed++;
+            }
+        }
+        // At most two windows if the loop straddles a second boundary
+        assertTrue(passed >= 3 && passed <= 6, "passed " + passed);
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, security, Level.DEBUG, null, null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, security, Level.WARN, "Denied", null, null));
+        assertEquals(FilterReply.NEUTRAL, filter.decide(null, other, Level.DEBUG, "select", null, null));
+        assertEquals(100 - passed, filter.getDropped());
+    }
+}
@@ -0,0 +1,61 @@
+package habsida.spring.boot_security.demo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs EXPLAIN on the hot queries against the Flyway-built H2 schema
+ * and checks that the planner picks the intended index.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class SchemaIndexUsageTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void loginLookupUsesEmailUniqueIndex() {
+        assertPlanUses("SELECT * FROM users WHERE email = 'admin@gmail.com'", "UK_USERS_EMAIL");
+    }
+
+    @Test
+    public void activeUserCountUsesActiveIndex() {
+        assertPlanUses("SELECT COUNT(*) FROM users WHERE is_active = TRUE", "IDX_USERS_IS_ACTIVE_UPDATED_AT");
+    }
+
+    @Test
+    public void tenantActiveUserCountUsesTenantLeadingIndex() {
+        assertPlanUses("SELECT COUNT(*) FROM users WHERE tenant_id = 'default' AND is_active = TRUE",
+                "IDX_USERS_TENANT_ACTIVE");
+    }
+
+    @Test
+    public void roleMembershipCountUsesReverseIndex() {
+        assertPlanUses("SELECT COUNT(ur.user_id) FROM users_roles ur JOIN roles r ON r.id = ur.role_id "
+                + "WHERE r.name = 'ADMIN'", "IDX_USERS_ROLES_ROLE_USER");
+    }
+
+    @Test
+    public void newestUsersListingUsesCreatedAtIndex() {
+        assertPlanUses("SELECT id, created_at FROM users WHERE created_at >= TIMESTAMP '2024-01-01 00:00:00' "
+                + "ORDER BY created_at DESC LIMIT 20", "IDX_USERS_CREATED_AT");
+    }
+
+    @Test
+    public void auditPageByActorUsesTenantActorIndex() {
+        assertPlanUses("SELECT * FROM audit_log WHERE tenant_id = 'default' AND actor = 'admin@gmail.com' "
+                + "ORDER BY id DESC LIMIT 50", "IDX_AUDIT_LOG_TENANT_ACTOR");
+    }
+
+    private void assertPlanUses(String sql, String indexName) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+        assertNotNull(plan);
+        assertTrue(plan.toUpperCase().contains(indexName), "Expected " + indexName + " in plan:\n" + plan);
+    }
+}
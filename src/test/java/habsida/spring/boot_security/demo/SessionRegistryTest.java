@@ -0,0 +1,139 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.configs.UserSessionRegistry;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestBuilders.formLogin;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SessionRegistryTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserSessionRegistry sessionRegistry;
+
+    @Test
+    public void disablingUserExpiresTheirSessions() throws Exception {
+        Long id = createUser("sessions@example.com");
+        int before = activeSessions();
+
+        MvcResult login = mockMvc.perform(formLogin("/login").user("sessions@example.com").password("secret1")).andReturn();
+        MockHttpSession session = (MockHttpSession) login.getRequest().getSession(false);
+        assertNotNull(session);
+        assertEquals(before + 1, activeSessions());
+        assertEquals(200, mockMvc.perform(get("/api/users/current").session(session)).andReturn().getResponse().getStatus());
+
+        assertEquals(200, mockMvc.perform(put("/api/admin/users/" + id + "/disable")
+                .with(user("admin@gmail.com").roles("ADMIN"))).andReturn().getResponse().getStatus());
+        assertEquals(before, activeSessions());
+
+        MockHttpServletResponse response = mockMvc.perform(get("/api/users/current").session(session))
+                .andReturn().getResponse();
+        assertEquals(302, response.getStatus());
+        assertEquals("/login?expired", response.getRedirectedUrl());
+    }
+
+    @Test
+    public void registryStaysWithinMaxSessions() {
+        // Two live sessions and one slot for a pushed-out session awaiting logout
+        UserSessionRegistry registry = new UserSessionRegistry(3, Duration.ofMinutes(30));
+        for (int i = 0; i < 10; i++) {
+            registry.registerNewSession("session-" + i, "user" + i + "@example.com");
+            registry.refreshLastRequest("session-" + i);
+        }
+
+        Map<String, Object> stats = registry.stats(TenantContext.DEFAULT_TENANT);
+        assertEquals(2, stats.get("registeredSessions"));
+        assertEquals(1, stats.get("evictedPendingLogout"));
+        assertEquals(8L, stats.get("evicted"));
+        assertEquals(7L, stats.get("evictedForgotten"));
+        assertEquals(2, registry.getAllPrincipals().size());
+
+        // The latest pushed-out session is still known, as expired, so it is logged out on its next request
+        int expired = 0;
+        String pushedOut = null;
+        for (int i = 0; i < 10; i++) {
+            SessionInformation session = registry.getSessionInformation("session-" + i);
+            if (session != null && session.isExpired()) {
+                expired++;
+                pushedOut = session.getSessionId();
+            }
+        }
+        assertEquals(1, expired);
+        assertFalse(registry.getSessionInformation("session-9").isExpired());
+
+        registry.removeSessionInformation(pushedOut);
+        assertNull(registry.getSessionInformation(pushedOut));
+    }
+
+    @Test
+    public void loginFloodNeverGrowsPastMaxSessions() {
+        UserSessionRegistry registry = new UserSessionRegistry(100, Duration.ofMinutes(30));
+        for (int i = 0; i < 10_000; i++) {
+            registry.registerNewSession("flood-" + i, "flood" + i + "@example.com");
+            Map<String, Object> stats = registry.stats(TenantContext.DEFAULT_TENANT);
+            int held = (Integer) stats.get("registeredSessions") + (Integer) stats.get("evictedPendingLogout");
+            assertTrue(held <= 100, "held " + held + " after " + (i + 1) + " logins");
+        }
+
+        Map<String, Object> stats = registry.stats(TenantContext.DEFAULT_TENANT);
+        assertEquals(90, stats.get("registeredSessions"));
+        assertEquals(10, stats.get("evictedPendingLogout"));
+        assertNotNull(registry.getSessionInformation("flood-9999"));
+    }
+
+    private int activeSessions() {
+        return (Integer) sessionRegistry.stats(TenantContext.DEFAULT_TENANT).get("activeSessions");
+    }
+
+    private Long createUser(String email) {
+        Role role = roleRepository.findByName("USER").orElseThrow(IllegalStateException::new);
+        User user = new User();
+        user.setFirstName("Sess");
+        user.setLastName("Ion");
+        user.setAge(30);
+        user.setEmail(email);
+        user.setUsername(email);
+        user.setPassword(passwordEncoder.encode("secret1"));
+        user.setActive(true);
+        user.setRoles(new HashSet<>(Collections.singleton(role)));
+        return userRepository.save(user).getId();
+    }
+}
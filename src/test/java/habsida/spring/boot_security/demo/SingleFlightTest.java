@@ -0,0 +1,81 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.service.SingleFlight;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SingleFlightTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void concurrentCallersShareOneLoad() throws Exception {
+        final SingleFlight<String, Object> flight = new SingleFlight<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> flight.execute("key", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new Object();
+                })));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((Long) flight.stats().get("shared") < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+
+            Object first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Object> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertEquals(0, flight.stats().get("inFlight"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void currentUserAndRolesAreServedFromSharedLookups() throws Exception {
+        mockMvc.perform(get("/api/users/current").with(user("user@gmail.com").roles("USER")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.email").value("user@gmail.com"));
+        mockMvc.perform(get("/api/admin/roles").with(user("admin@gmail.com").roles("ADMIN")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[*].name", hasItem("ADMIN")));
+    }
+}
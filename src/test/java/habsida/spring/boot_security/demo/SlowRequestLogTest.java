@@ -0,0 +1,87 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.CorrelationIdFilter;
+import habsida.spring.boot_security.demo.service.SlowRequestLog;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest(properties = "app.diagnostics.slow-requests.min-duration=0")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SlowRequestLogTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SlowRequestLog slowRequestLog;
+
+    @Test
+    public void requestsAreRecordedWithPhasesAndStatements() throws Exception {
+        mockMvc.perform(get("/api/admin/roles").header(CorrelationIdFilter.HEADER, "slow-roles")
+                .with(user("admin@gmail.com").roles("ADMIN")));
+        mockMvc.perform(post("/login").param("username", "nobody@example.com").param("password", "wrong")
+                .with(csrf()).header(CorrelationIdFilter.HEADER, "slow-login"));
+
+        SlowRequestLog.SlowRequest roles = find("slow-roles");
+        assertEquals("/api/admin/roles", roles.getPath());
+        assertEquals(200, roles.getStatus());
+        Map<String, Long> phases = roles.getPhaseMicros();
+        for (String phase : new String[]{"filters", "handler", "serialization", "sql", "mapping"}) {
+            assertTrue(phases.containsKey(phase), phase + " in " + phases);
+        }
+        assertTrue(roles.getQueryCount() > 0);
+        assertTrue(roles.getQueries().keySet().stream().anyMatch(sql -> sql.toLowerCase().startsWith("select")));
+
+        SlowRequestLog.SlowRequest login = find("slow-login");
+        assertTrue(login.getPhaseMicros().containsKey("authentication"), login.getPhaseMicros().toString());
+        assertFalse(login.getPhaseMicros().containsKey("handler"));
+        assertTrue(login.getQueryCount() > 0);
+
+        String body = mockMvc.perform(get("/api/admin/diagnostics/slow-requests")
+                .with(user("admin@gmail.com").roles("ADMIN"))).andReturn().getResponse().getContentAsString();
+        assertTrue(body.contains("\"requestId\":\"slow-roles\""), body);
+    }
+
+    @Test
+    public void keepsOnlyTheSlowestRequests() {
+        SlowRequestLog log = new SlowRequestLog(3, Duration.ofMillis(2));
+        for (long duration : new long[]{5, 1, 9, 3, 7, 2}) {
+            log.offer(request(duration));
+        }
+        List<Long> kept = log.slowest().stream().map(SlowRequestLog.SlowRequest::getDurationMillis)
+                .collect(Collectors.toList());
+        assertEquals(Arrays.asList(9L, 7L, 5L), kept);
+        assertEquals(5L, log.stats().get("offered"));
+    }
+
+    private SlowRequestLog.SlowRequest find(String requestId) {
+        return slowRequestLog.slowest().stream()
+                .filter(request -> requestId.equals(request.getRequestId()))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("not recorded: " + requestId));
+    }
+
+    private static SlowRequestLog.SlowRequest request(long durationMillis) {
+        return new SlowRequestLog.SlowRequest("r" + durationMillis, "GET", "/", 200, LocalDateTime.now(),
+                durationMillis, Collections.emptyMap(), 0, Collections.emptyMap());
+    }
+}
@@ -0,0 +1,111 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SparseFieldsetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Test
+    public void listOnlyContainsTheRequestedFields() throws Exception {
+        mockMvc.perform(get("/api/users").param("fields", "id,email")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data").isNotEmpty())
+                .andExpect(jsonPath("$.data[*]", everyItem(hasKey("id"))))
+                .andExpect(jsonPath("$.data[*]", everyItem(hasKey("email"))))
+                .andExpect(jsonPath("$.data[*]", everyItem(not(hasKey("firstName")))))
+                .andExpect(jsonPath("$.data[*]", everyItem(not(hasKey("roles")))));
+    }
+
+    @Test
+    public void singleUserOnlyContainsTheRequestedFields() throws Exception {
+        Long id = userRepository.findByEmail("admin@gmail.com").orElseThrow(IllegalStateException::new).getId();
+        mockMvc.perform(get("/api/users/" + id).param("fields", "email,updatedAt")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.email").value("admin@gmail.com"))
+                .andExpect(jsonPath("$.data", hasKey("updatedAt")))
+                .andExpect(jsonPath("$.data", not(hasKey("id"))))
+                .andExpect(jsonPath("$.data", not(hasKey("photo"))));
+    }
+
+    @Test
+    public void unknownFieldsAreRejected() throws Exception {
+        mockMvc.perform(get("/api/users").param("fields", "id,bogus")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Unknown field: bogus"));
+
+        mockMvc.perform(get("/api/users").param("fields", "password")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void otherControllersIgnoreFields() throws Exception {
+        mockMvc.perform(get("/api/roles").param("fields", "name")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void mutationsAreNotAnsweredWithAnErrorAfterTheyHappened() throws Exception {
+        Role role = roleRepository.findByName("USER").orElseThrow(IllegalStateException::new);
+        User target = new User();
+        target.setUsername("fields-disable@example.com");
+        target.setEmail("fields-disable@example.com");
+        target.setFirstName("Fields");
+        target.setLastName("Disable");
+        target.setAge(30);
+        target.setPassword("encoded-password");
+        target.setActive(true);
+        target.setRoles(Collections.singleton(role));
+        Long id = userRepository.save(target).getId();
+
+        mockMvc.perform(put("/api/admin/users/" + id + "/disable").param("fields", "bogus")
+                        .with(user("admin@gmail.com").roles("ADMIN"))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true));
+        assertFalse(userRepository.findById(id).orElseThrow(IllegalStateException::new).isActive());
+    }
+}
@@ -0,0 +1,45 @@
+package habsida.spring.boot_security.demo;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application with the fast-startup profile on a fresh database and reports
+ * how long it takes until the first HTTP request is answered.
+ */
+public class StartupTimeTest {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimeTest.class);
+
+    @Test
+    public void reportsTimeToFirstRequest() throws Exception {
+        long start = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootSecurityDemoApplication.class)
+                .profiles("test", "fast-startup")
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")) {
+            long ready = System.nanoTime();
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/login").openConnection();
+            int status = connection.getResponseCode();
+            long firstResponse = System.nanoTime();
+            connection.disconnect();
+
+            assertEquals(200, status);
+            log.info("Startup (fast-startup profile): ready in {} ms, first request answered after {} ms",
+                    TimeUnit.NANOSECONDS.toMillis(ready - start),
+                    TimeUnit.NANOSECONDS.toMillis(firstResponse - start));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.not;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Own database for the second tenant; without open-in-view the body's thread gets no request entity manager
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:streaming;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jpa.open-in-view=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class StreamedUserListTest {
+
+    private static final String TENANT = "acme";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private User acmeAdmin;
+
+    @BeforeEach
+    public void createTenant() {
+        TenantContext.runAs(TENANT, () -> {
+            Role admin = roleRepository.findByName("ADMIN").orElseGet(() -> {
+                Role role = new Role();
+                role.setName("ADMIN");
+                role.setBitIndex(roleRepository.nextFreeBitIndex());
+                role.setPermissions(EnumSet.allOf(Permission.class));
+                return roleRepository.save(role);
+            });
+            acmeAdmin = userRepository.findByEmail("admin@acme.example").orElseGet(() -> {
+                User user = new User();
+                user.setUsername("admin@acme.example");
+                user.setEmail("admin@acme.example");
+                user.setFirstName("Acme");
+                user.setLastName("Admin");
+                user.setAge(40);
+                user.setPassword("encoded-password");
+                user.setActive(true);
+                user.setRoles(Collections.singleton(admin));
+                return userRepository.save(user);
+            });
+        });
+    }
+
+    @Test
+    public void streamsOnlyTheRequestTenantsUsersInTheUsualEnvelope() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/admin/users").param("stream", "true").with(user(acmeAdmin)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.success").value(true))
+                .andExpect(jsonPath("$.message").value("Users retrieved successfully"))
+                .andExpect(jsonPath("$.errors").isEmpty())
+                .andExpect(jsonPath("$.data[*].email", contains("admin@acme.example")))
+                .andExpect(jsonPath("$.data[0].roles", contains("ADMIN")))
+                .andExpect(jsonPath("$.data[*]", everyItem(not(hasKey("password")))));
+    }
+
+    @Test
+    public void streamedFieldsAreNarrowed() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/admin/users").param("stream", "true").param("fields", "id,email")
+                        .with(user(acmeAdmin)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0]", hasKey("email")))
+                .andExpect(jsonPath("$.data[0]", not(hasKey("firstName"))));
+    }
+}
@@ -0,0 +1,145 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.configs.TenantContext;
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import habsida.spring.boot_security.demo.service.AuditLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+// Own database: unscoped code (startup, other tests) would otherwise see the second tenant
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:tenants;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class TenantIsolationTest {
+
+    private static final String TENANT = "acme";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User acmeAdmin;
+
+    @BeforeEach
+    public void createTenant() {
+        TenantContext.runAs(TENANT, () -> {
+            Role admin = roleRepository.findByName("ADMIN").orElseGet(() -> {
+                Role role = new Role();
+                role.setName("ADMIN");
+                role.setBitIndex(roleRepository.nextFreeBitIndex());
+                role.setPermissions(EnumSet.allOf(Permission.class));
+                return roleRepository.save(role);
+            });
+            acmeAdmin = userRepository.findByEmail("admin@acme.example").orElseGet(() -> {
+                User user = new User();
+                user.setUsername("admin@acme.example");
+                user.setEmail("admin@acme.example");
+                user.setFirstName("Acme");
+                user.setLastName("Admin");
+                user.setAge(40);
+                user.setPassword("encoded-password");
+                user.setActive(true);
+                user.setRoles(Collections.singleton(admin));
+                return userRepository.save(user);
+            });
+        });
+    }
+
+    @Test
+    public void repositoryQueriesOnlySeeTheRequestTenant() throws Exception {
+        String users = asAcmeAdmin("/api/admin/users");
+        assertTrue(users.contains("admin@acme.example"));
+        assertFalse(users.contains("admin@gmail.com"));
+
+        String stats = asAcmeAdmin("/api/admin/dashboard/stats");
+        assertTrue(stats.contains("\"totalUsers\":1"), stats);
+    }
+
+    @Test
+    public void usersOfOtherTenantsAreNotFoundById() throws Exception {
+        Long otherTenantUser = userRepository.findByEmail("admin@gmail.com").orElseThrow(IllegalStateException::new).getId();
+        MvcResult result = mockMvc.perform(get("/api/users/" + otherTenantUser).with(user(acmeAdmin))).andReturn();
+        assertEquals(404, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void auditEntriesAreOnlyVisibleInTheirTenant() throws Exception {
+        TenantContext.runAs(TENANT, () -> auditLog.record("UPDATE", "USER", "acme-audited", null, null));
+        auditLog.record("UPDATE", "USER", "default-audited", null, null);
+        awaitAuditRows("acme-audited", "default-audited");
+
+        String acme = asAcmeAdmin("/api/admin/audit?size=200");
+        assertTrue(acme.contains("acme-audited"), acme);
+        assertFalse(acme.contains("default-audited"), acme);
+
+        MvcResult result = mockMvc.perform(get("/api/admin/audit").param("size", "200")
+                .with(user("admin@gmail.com").roles("ADMIN"))).andReturn();
+        String platform = result.getResponse().getContentAsString();
+        assertTrue(platform.contains("default-audited"), platform);
+        assertFalse(platform.contains("acme-audited"), platform);
+    }
+
+    @Test
+    public void photoCacheStatsOnlyShowTheRequestTenant() throws Exception {
+        String stats = asAcmeAdmin("/api/admin/photo-cache/stats");
+        assertTrue(stats.contains("\"tenant\":\"acme\""), stats);
+        assertFalse(stats.contains("\"default\""), stats);
+    }
+
+    @Test
+    public void tenantAdminsCannotControlSharedJobs() throws Exception {
+        for (String action : new String[]{"run", "pause", "resume"}) {
+            MvcResult result = mockMvc.perform(post("/api/admin/jobs/user-archival/" + action).with(user(acmeAdmin)))
+                    .andReturn();
+            assertEquals(403, result.getResponse().getStatus(), action);
+        }
+    }
+
+    private void awaitAuditRows(String... targetIds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (String targetId : targetIds) {
+            while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_log WHERE target_id = ?",
+                    Integer.class, targetId) == 0) {
+                assertTrue(System.nanoTime() < deadline, "Audit entry for " + targetId + " was not written");
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private String asAcmeAdmin(String path) throws Exception {
+        MvcResult result = mockMvc.perform(get(path).with(user(acmeAdmin))).andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        return result.getResponse().getContentAsString();
+    }
+}
@@ -0,0 +1,142 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import habsida.spring.boot_security.demo.service.UserArchiver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class UserArchivalTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Autowired
+    private UserArchiver userArchiver;
+
+    @Test
+    public void deletedUserIsArchivedWithItsRolesAndCanBeRestored() throws Exception {
+        Long id = createUser("archived@example.com");
+
+        assertEquals(200, asAdmin(delete("/api/admin/users/" + id)));
+        assertFalse(userRepository.findByEmail("archived@example.com").isPresent());
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE id = ? AND deleted_at IS NOT NULL", id));
+
+        assertTrue(userArchiver.archive() >= 1);
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE id = ?", id));
+        assertEquals(1, count("SELECT COUNT(*) FROM users_archive WHERE id = ?", id));
+        assertEquals(1, count("SELECT COUNT(*) FROM users_roles_archive WHERE user_id = ?", id));
+
+        assertEquals(200, asAdmin(post("/api/admin/users/" + id + "/restore")));
+        User restored = userRepository.findByEmail("archived@example.com").orElseThrow(IllegalStateException::new);
+        assertTrue(restored.hasRole("USER"));
+        assertEquals(0, count("SELECT COUNT(*) FROM users_archive WHERE id = ?", id));
+        assertEquals(404, asAdmin(post("/api/admin/users/" + id + "/restore")));
+    }
+
+    @Test
+    public void onlyLongInactiveUsersAreArchived() throws Exception {
+        Long stale = createUser("stale@example.com");
+        Long recent = createUser("recent@example.com");
+        jdbcTemplate.update("UPDATE users SET is_active = FALSE, updated_at = DATEADD('DAY', -400, CURRENT_TIMESTAMP) WHERE id = ?", stale);
+        jdbcTemplate.update("UPDATE users SET is_active = FALSE WHERE id = ?", recent);
+
+        userArchiver.archive();
+        assertEquals(1, count("SELECT COUNT(*) FROM users_archive WHERE id = ?", stale));
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE id = ?", recent));
+    }
+
+    @Test
+    public void purgeAfterRetentionReleasesTheArchivedUsersPhoto() throws Exception {
+        Long keptId = createUser("kept-photo@example.com");
+        Long purgedId = createUser("purged-photo@example.com");
+        String digest = String.format("%064d", 42);
+        jdbcTemplate.update("INSERT INTO photos (digest, content, content_type, size_bytes, ref_count, created_at) "
+                + "VALUES (?, X'00', 'image/png', 1, 2, CURRENT_TIMESTAMP)", digest);
+        jdbcTemplate.update("UPDATE users SET photo_digest = ? WHERE id IN (?, ?)", digest, keptId, purgedId);
+
+        assertEquals(200, asAdmin(delete("/api/admin/users/" + keptId)));
+        assertEquals(200, asAdmin(delete("/api/admin/users/" + purgedId)));
+        userArchiver.archive();
+        jdbcTemplate.update("UPDATE users_archive SET archived_at = DATEADD('DAY', -400, CURRENT_TIMESTAMP) WHERE id = ?", purgedId);
+
+        assertTrue(userArchiver.purge() >= 1);
+        assertEquals(0, count("SELECT COUNT(*) FROM users_archive WHERE id = ?", purgedId));
+        assertEquals(0, count("SELECT COUNT(*) FROM users_roles_archive WHERE user_id = ?", purgedId));
+        assertEquals(1, count("SELECT COUNT(*) FROM users_archive WHERE id = ?", keptId));
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject(
+                "SELECT ref_count FROM photos WHERE digest = ?", Integer.class, digest));
+
+        // The last reference goes with the second user
+        jdbcTemplate.update("UPDATE users_archive SET archived_at = DATEADD('DAY', -400, CURRENT_TIMESTAMP) WHERE id = ?", keptId);
+        userArchiver.purge();
+        assertEquals(Integer.valueOf(0), jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM photos WHERE digest = ?", Integer.class, digest));
+    }
+
+    @Test
+    public void softDeletedUserCannotBePatched() throws Exception {
+        Long id = createUser("patched-after-delete@example.com");
+        Long version = userRepository.findById(id).orElseThrow(IllegalStateException::new).getVersion();
+        assertEquals(200, asAdmin(delete("/api/admin/users/" + id)));
+
+        int status = asAdmin(patch("/api/admin/users/" + id)
+                .header("If-Match", "\"" + (version + 1) + "\"")
+                .contentType("application/merge-patch+json")
+                .content("{\"email\":\"hijacked@example.com\",\"password\":\"changed-password\"}"));
+        assertEquals(404, status);
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE id = ? AND email = 'patched-after-delete@example.com'", id));
+    }
+
+    private Long createUser(String email) {
+        Role role = roleRepository.findByName("USER").orElseThrow(IllegalStateException::new);
+        User user = new User();
+        user.setFirstName("Archie");
+        user.setLastName("Ved");
+        user.setAge(30);
+        user.setEmail(email);
+        user.setUsername(email);
+        user.setPassword("secret1");
+        user.setActive(true);
+        user.setRoles(new HashSet<>(Collections.singleton(role)));
+        return userRepository.save(user).getId();
+    }
+
+    private int count(String sql, Long id) {
+        return jdbcTemplate.queryForObject(sql, Integer.class, id);
+    }
+
+    private int asAdmin(MockHttpServletRequestBuilder request) throws Exception {
+        return mockMvc.perform(request.with(user("admin@gmail.com").roles("ADMIN")))
+                .andReturn().getResponse().getStatus();
+    }
+}
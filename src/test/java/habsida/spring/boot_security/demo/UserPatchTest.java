@@ -0,0 +1,100 @@
+package habsida.spring.boot_security.demo;
+
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.repository.RoleRepository;
+import habsida.spring.boot_security.demo.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class UserPatchTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    @Test
+    public void patchWritesOnlyTheNamedColumnsAndBumpsTheVersion() throws Exception {
+        User before = createUser("patched@example.com");
+
+        int status = patchUser(before.getId(), before.getVersion(), "{\"firstName\":\"Patched\"}",
+                user("admin@gmail.com").roles("ADMIN"));
+        assertEquals(200, status);
+
+        User after = userRepository.findById(before.getId()).orElseThrow(IllegalStateException::new);
+        assertEquals("Patched", after.getFirstName());
+        assertEquals(before.getLastName(), after.getLastName());
+        assertEquals(before.getEmail(), after.getEmail());
+        assertEquals(before.getAge(), after.getAge());
+        assertEquals(before.getPassword(), after.getPassword());
+        assertEquals(before.getVersion() + 1, after.getVersion());
+    }
+
+    @Test
+    public void usersCannotChangeTheirOwnRoles() throws Exception {
+        User self = createUser("escalate@example.com");
+        Role admin = roleRepository.findByName("ADMIN").orElseThrow(IllegalStateException::new);
+
+        int status = patchUser(self.getId(), self.getVersion(), "{\"roleIds\":[" + admin.getId() + "]}", user(self));
+        assertEquals(400, status);
+
+        User after = userRepository.findById(self.getId()).orElseThrow(IllegalStateException::new);
+        assertFalse(after.hasRole("ADMIN"));
+        assertEquals(self.getVersion(), after.getVersion());
+    }
+
+    @Test
+    public void usersCannotPatchSomeoneElse() throws Exception {
+        User self = createUser("self@example.com");
+        User other = createUser("other@example.com");
+
+        int status = patchUser(other.getId(), other.getVersion(), "{\"firstName\":\"Hijacked\"}", user(self));
+        assertEquals(403, status);
+        assertEquals("Patch", userRepository.findById(other.getId()).orElseThrow(IllegalStateException::new).getFirstName());
+    }
+
+    private int patchUser(Long id, Long version, String body, RequestPostProcessor principal) throws Exception {
+        return mockMvc.perform(patch("/api/users/" + id)
+                        .with(principal)
+                        .header("If-Match", "\"" + version + "\"")
+                        .contentType("application/merge-patch+json")
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn().getResponse().getStatus();
+    }
+
+    private User createUser(String email) {
+        Role role = roleRepository.findByName("USER").orElseThrow(IllegalStateException::new);
+        User user = new User();
+        user.setFirstName("Patch");
+        user.setLastName("Target");
+        user.setAge(30);
+        user.setEmail(email);
+        user.setUsername(email);
+        user.setPassword("encoded-password");
+        user.setActive(true);
+        user.setRoles(new HashSet<>(Collections.singleton(role)));
+        return userRepository.save(user);
+    }
+}
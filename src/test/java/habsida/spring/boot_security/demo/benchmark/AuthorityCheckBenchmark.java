@@ -0,0 +1,84 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import habsida.spring.boot_security.demo.model.Permission;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import habsida.spring.boot_security.demo.service.PermissionMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Role checks by name (the old streamed lookup, the way Spring Security sees authorities)
+ * against the permission lookup hasPermission() does, once from authority names and once from
+ * the cached bit mask as PermissionService does for loaded users. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="AuthorityCheck -prof gc"}
+ * to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthorityCheckBenchmark {
+
+    private User user;
+    private PermissionMatrix matrix;
+    private long permissionMask;
+
+    @Setup
+    public void setUp() {
+        Role admin = role("ADMIN", 0);
+        admin.setPermissions(EnumSet.of(Permission.USERS_UPDATE));
+        Role regular = role("USER", 1);
+        Set<Role> roles = new HashSet<>();
+        roles.add(admin);
+        roles.add(regular);
+        user = new User();
+        user.setRoles(roles);
+        matrix = PermissionMatrix.compile(roles);
+        permissionMask = Permission.USERS_UPDATE.getMask();
+    }
+
+    @Benchmark
+    public boolean streamedNameMatch() {
+        return user.getRoles().stream().anyMatch(role -> role.getName().equals("ADMIN"));
+    }
+
+    @Benchmark
+    public boolean authoritySetContains() {
+        return AuthorityUtils.authorityListToSet(user.getAuthorities()).contains("ROLE_ADMIN");
+    }
+
+    @Benchmark
+    public boolean permissionByAuthorityNames() {
+        return (matrix.permissionsOf(user.getAuthorities()) & permissionMask) != 0;
+    }
+
+    @Benchmark
+    public boolean permissionByMask() {
+        return (matrix.permissionsOf(user.getAuthorityMask()) & permissionMask) != 0;
+    }
+
+    private static Role role(String name, int bitIndex) {
+        Role role = new Role();
+        role.setId((long) bitIndex + 1);
+        role.setName(name);
+        role.setBitIndex(bitIndex);
+        return role;
+    }
+}
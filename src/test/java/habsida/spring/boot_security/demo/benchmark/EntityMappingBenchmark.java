@@ -0,0 +1,125 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.dto.UserMapper;
+import habsida.spring.boot_security.demo.model.Photo;
+import habsida.spring.boot_security.demo.model.Role;
+import habsida.spring.boot_security.demo.model.User;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * User list to DTOs with the hand-written builder conversion the controllers used to carry
+ * against the generated {@link UserMapper}. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark="EntityMapping -prof gc"}
+ * to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityMappingBenchmark {
+
+    @Param({"20", "200", "2000"})
+    public int users;
+
+    private final UserMapper mapper = Mappers.getMapper(UserMapper.class);
+
+    private List<User> entities;
+
+    @Setup
+    public void setUp() {
+        Role admin = role("ADMIN", 0);
+        Role regular = role("USER", 1);
+        Photo photo = new Photo();
+        photo.setContent(new byte[16 * 1024]);
+        entities = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            Set<Role> roles = new HashSet<>();
+            roles.add(regular);
+            if (i % 10 == 0) {
+                roles.add(admin);
+            }
+            User user = new User();
+            user.setId((long) i + 1);
+            user.setFirstName("First" + i);
+            user.setLastName("Last" + i);
+            user.setAge(20 + i % 50);
+            user.setEmail("user" + i + "@example.com");
+            user.setUsername(user.getEmail());
+            user.setStoredPhoto(photo);
+            user.setPhotoContentType("image/jpeg");
+            user.setCreatedAt(LocalDateTime.now());
+            user.setUpdatedAt(LocalDateTime.now());
+            user.setVersion(0L);
+            user.setRoles(roles);
+            entities.add(user);
+        }
+    }
+
+    @Benchmark
+    public List<UserDto> handWritten() {
+        return entities.stream().map(EntityMappingBenchmark::convertToDto).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<UserDto> generated() {
+        List<UserDto> dtos = new ArrayList<>(entities.size());
+        for (User user : entities) {
+            dtos.add(mapper.toDto(user));
+        }
+        return dtos;
+    }
+
+    // The controllers' conversion before UserMapper
+    private static UserDto convertToDto(User user) {
+        return UserDto.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .age(user.getAge())
+                .email(user.getEmail())
+                .photo(user.getPhoto())
+                .photoContentType(user.getPhotoContentType())
+                .roles(user.getRoles().stream()
+                        .map(Role::getName)
+                        .collect(Collectors.toSet()))
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .isActive(user.isActive())
+                .lastLoginAt(user.getLastLoginAt())
+                .loginCount(user.getLoginCount())
+                .version(user.getVersion())
+                .build();
+    }
+
+    private static Role role(String name, int bitIndex) {
+        Role role = new Role();
+        role.setId((long) bitIndex + 1);
+        role.setName(name);
+        role.setBitIndex(bitIndex);
+        role.setTenantId("default");
+        return role;
+    }
+}
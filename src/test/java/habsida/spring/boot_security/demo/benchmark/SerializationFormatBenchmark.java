@@ -0,0 +1,119 @@
+package habsida.spring.boot_security.demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import habsida.spring.boot_security.demo.dto.ApiResponse;
+import habsida.spring.boot_security.demo.dto.UserDto;
+import habsida.spring.boot_security.demo.dto.UserSummaryDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode/decode cost of the {@code /api/admin/users} envelope as JSON, CBOR and Smile.
+ * Payload sizes are printed once per trial. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=SerializationFormat}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationFormatBenchmark {
+
+    private static final TypeReference<ApiResponse<List<UserSummaryDto>>> RESPONSE_TYPE =
+            new TypeReference<ApiResponse<List<UserSummaryDto>>>() {
+            };
+
+    @Param({"20", "200", "2000"})
+    public int users;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private ApiResponse<List<UserSummaryDto>> response;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        mapper = mapperFor(format);
+        response = ApiResponse.success("Users retrieved successfully", users(users));
+        encoded = mapper.writeValueAsBytes(response);
+        System.out.printf("%n%s payload for %d users: %d bytes%n", format, users, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public ApiResponse<List<UserSummaryDto>> decode() throws Exception {
+        return mapper.readValue(encoded, RESPONSE_TYPE);
+    }
+
+    /**
+     * Same builder setup as the application's converters: Boot defaults plus the userFields filter.
+     */
+    private static ObjectMapper mapperFor(String format) {
+        JsonFactory factory;
+        switch (format) {
+            case "cbor":
+                factory = new CBORFactory();
+                break;
+            case "smile":
+                factory = new SmileFactory();
+                break;
+            default:
+                factory = new JsonFactory();
+        }
+        return new Jackson2ObjectMapperBuilder()
+                .factory(factory)
+                .filters(new SimpleFilterProvider()
+                        .addFilter(UserDto.FIELDS_FILTER, SimpleBeanPropertyFilter.serializeAll()))
+                .build();
+    }
+
+    private static List<UserSummaryDto> users(int count) {
+        List<UserSummaryDto> result = new ArrayList<>(count);
+        LocalDateTime created = LocalDateTime.of(2024, 1, 1, 9, 0);
+        for (int i = 1; i <= count; i++) {
+            result.add(UserSummaryDto.builder()
+                    .id((long) i)
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .email("user" + i + "@example.com")
+                    .age(20 + i % 50)
+                    .roles(i % 10 == 0 ? new HashSet<>(Arrays.asList("USER", "ADMIN")) : new HashSet<>(Arrays.asList("USER")))
+                    .isActive(i % 7 != 0)
+                    .createdAt(created.plusMinutes(i))
+                    .version((long) (i % 3))
+                    .build());
+        }
+        return result;
+    }
+}